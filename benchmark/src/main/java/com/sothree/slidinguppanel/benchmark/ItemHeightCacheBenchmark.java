@@ -0,0 +1,42 @@
+package com.sothree.slidinguppanel.benchmark;
+
+import com.sothree.slidinguppanel.core.ItemHeightCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scroll offset queries on a list of rows of mixed heights scrolled one row per query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ItemHeightCacheBenchmark {
+
+    private static final int ITEM_COUNT = 10000;
+    private static final int VISIBLE_COUNT = 12;
+
+    private final ItemHeightCache mCache = new ItemHeightCache();
+    private int mFirst;
+
+    @Setup
+    public void setUp() {
+        mCache.setItemCount(ITEM_COUNT);
+    }
+
+    @Benchmark
+    public long scrollQuery() {
+        mFirst = mFirst + 1 < ITEM_COUNT - VISIBLE_COUNT ? mFirst + 1 : 0;
+        final int last = mFirst + VISIBLE_COUNT - 1;
+        mCache.put(mFirst, 48 + (mFirst % 7) * 16);
+        mCache.put(last, 48 + (last % 7) * 16);
+        return mCache.getHeightAbove(mFirst) + mCache.getHeightBelow(last);
+    }
+}
@@ -0,0 +1,47 @@
+package com.sothree.slidinguppanel.benchmark;
+
+import com.sothree.slidinguppanel.core.PanelGeometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per frame geometry of a drag: the new top of the panel is clamped, converted to a slide offset,
+ * and converted back to a top position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PanelGeometryBenchmark {
+
+    private static final int LAYOUT_HEIGHT = 1920;
+    private static final int PANEL_HEIGHT = 204;
+    private static final int SLIDEABLE_HEIGHT = 1700;
+    private static final int SLIDE_RANGE = SLIDEABLE_HEIGHT - PANEL_HEIGHT;
+
+    private int mTop = LAYOUT_HEIGHT / 2;
+    private int mDy = 7;
+
+    @Benchmark
+    public int dragFrame() {
+        // Bounce the drag between both ends of the range so every branch is exercised
+        mTop += mDy;
+        if (mTop < -100 || mTop > LAYOUT_HEIGHT + 100) {
+            mDy = -mDy;
+        }
+        final int collapsedTop = PanelGeometry.computePanelTopPosition(0f, SLIDE_RANGE, PANEL_HEIGHT,
+                SLIDEABLE_HEIGHT, LAYOUT_HEIGHT, 0, 0, true);
+        final int expandedTop = PanelGeometry.computePanelTopPosition(1f, SLIDE_RANGE, PANEL_HEIGHT,
+                SLIDEABLE_HEIGHT, LAYOUT_HEIGHT, 0, 0, true);
+        final int top = PanelGeometry.clampPanelTop(mTop, collapsedTop, expandedTop, true);
+        final float slideOffset = PanelGeometry.computeSlideOffset(top, collapsedTop, SLIDE_RANGE, true);
+        return PanelGeometry.computePanelTopPosition(slideOffset, SLIDE_RANGE, PANEL_HEIGHT,
+                SLIDEABLE_HEIGHT, LAYOUT_HEIGHT, 0, 0, true);
+    }
+}
@@ -0,0 +1,35 @@
+package com.sothree.slidinguppanel.benchmark;
+
+import com.sothree.slidinguppanel.core.SettleDurations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duration of the settle animation started when the panel is released.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SettleDurationsBenchmark {
+
+    private static final int PARENT_WIDTH = 1080;
+    private static final int SLIDE_RANGE = 1496;
+
+    private int mDy = 10;
+    private int mYVel = 0;
+
+    @Benchmark
+    public int settleDuration() {
+        mDy = mDy >= SLIDE_RANGE ? -SLIDE_RANGE : mDy + 37;
+        mYVel = mYVel >= 8000 ? 0 : mYVel + 250;
+        return SettleDurations.computeSettleDuration(0, mDy, 0, mYVel, 400, 8000,
+                0, SLIDE_RANGE, PARENT_WIDTH);
+    }
+}
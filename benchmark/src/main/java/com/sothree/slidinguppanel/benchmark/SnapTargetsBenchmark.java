@@ -0,0 +1,58 @@
+package com.sothree.slidinguppanel.benchmark;
+
+import com.sothree.slidinguppanel.core.SnapTargets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Release targeting for a panel released at various offsets and velocities, with a single anchor
+ * point and with several snap points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SnapTargetsBenchmark {
+
+    private static final float[] STOPS = {0f, 0.2f, 0.4f, 0.6f, 0.8f, 1f};
+
+    private float mSlideOffset;
+    private float mDirection = 1200f;
+
+    @Benchmark
+    public float releaseOffset() {
+        mSlideOffset += 0.013f;
+        if (mSlideOffset > 1f) {
+            mSlideOffset = 0f;
+            mDirection = mDirection > 0 ? -1200f : mDirection < 0 ? 0f : 1200f;
+        }
+        return SnapTargets.computeReleaseOffset(mSlideOffset, 0.6f, mDirection);
+    }
+
+    @Benchmark
+    public float releaseOffsetSnapPoints() {
+        mSlideOffset += 0.013f;
+        if (mSlideOffset > 1f) {
+            mSlideOffset = 0f;
+            mDirection = mDirection > 0 ? -1200f : mDirection < 0 ? 0f : 1200f;
+        }
+        return SnapTargets.computeReleaseOffset(mSlideOffset, STOPS, mDirection);
+    }
+
+    @Benchmark
+    public float projectedReleaseOffset() {
+        mSlideOffset += 0.013f;
+        if (mSlideOffset > 1f) {
+            mSlideOffset = 0f;
+            mDirection = mDirection > 0 ? -1200f : mDirection < 0 ? 0f : 1200f;
+        }
+        return SnapTargets.computeProjectedReleaseOffset(mSlideOffset, STOPS, mDirection / 1500f,
+                SnapTargets.DEFAULT_DECELERATION_RATE);
+    }
+}
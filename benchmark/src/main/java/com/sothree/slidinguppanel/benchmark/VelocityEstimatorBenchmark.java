@@ -0,0 +1,47 @@
+package com.sothree.slidinguppanel.benchmark;
+
+import com.sothree.slidinguppanel.core.DragPrediction;
+import com.sothree.slidinguppanel.core.VelocityEstimator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Velocity estimation and position prediction of a drag sampled every 8ms, with a full ring buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VelocityEstimatorBenchmark {
+
+    private final VelocityEstimator mEstimator = new VelocityEstimator();
+    private long mTime;
+
+    @Benchmark
+    public void addSample() {
+        mTime += 8;
+        mEstimator.addSample(mTime, (mTime % 1000) * 0.7f);
+    }
+
+    @Benchmark
+    public float addSampleAndComputeVelocity() {
+        mTime += 8;
+        mEstimator.addSample(mTime, (mTime % 1000) * 0.7f);
+        return mEstimator.computeVelocity();
+    }
+
+    @Benchmark
+    public float addSampleAndPredict() {
+        mTime += 8;
+        final float position = (mTime % 1000) * 0.7f;
+        mEstimator.addSample(mTime, position);
+        return DragPrediction.predictPosition(position, 5.6f, mEstimator.computeVelocity(),
+                mEstimator.computeAcceleration(), 0.016f, 48f);
+    }
+}
@@ -0,0 +1,41 @@
+package com.sothree.slidinguppanel.core;
+
+/**
+ * Extrapolates the position of a pointer a short time ahead, to draw a dragged view where the
+ * finger will be when the frame reaches the screen rather than where it was last reported.
+ */
+public final class DragPrediction {
+
+    private DragPrediction() {
+    }
+
+    /**
+     * Predicts the position of a pointer from its velocity and acceleration. The raw position is
+     * returned when the pointer reverses: when its last movement goes against its velocity, or
+     * when it would stop and turn back within the lead time.
+     *
+     * @param position     last reported position
+     * @param lastDelta    movement between the two last reported positions
+     * @param velocity     velocity in position units per second
+     * @param acceleration acceleration in position units per second squared
+     * @param leadSeconds  how far ahead to predict
+     * @param maxDistance  maximum distance between the raw and the predicted positions
+     * @return the predicted position
+     */
+    public static float predictPosition(float position, float lastDelta, float velocity, float acceleration,
+                                        float leadSeconds, float maxDistance) {
+        if (velocity == 0 || lastDelta * velocity < 0) {
+            return position;
+        }
+        float distance = velocity * leadSeconds + 0.5f * acceleration * leadSeconds * leadSeconds;
+        if (distance * velocity <= 0) {
+            return position;
+        }
+        if (distance > maxDistance) {
+            distance = maxDistance;
+        } else if (distance < -maxDistance) {
+            distance = -maxDistance;
+        }
+        return position + distance;
+    }
+}
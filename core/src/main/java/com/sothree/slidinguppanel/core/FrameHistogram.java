@@ -0,0 +1,141 @@
+package com.sothree.slidinguppanel.core;
+
+/**
+ * Fixed-size histogram of frame durations, with 1ms buckets. Recording a frame does not allocate
+ * so it can stay enabled in production.
+ */
+public final class FrameHistogram {
+
+    /**
+     * Number of buckets. Bucket i counts frames lasting [i, i + 1) ms, except the last one which
+     * counts every longer frame.
+     */
+    public static final int BUCKET_COUNT = 128;
+
+    /**
+     * A frame lasting longer than this factor times the frame interval missed at least one vsync
+     */
+    private static final float JANK_FACTOR = 1.5f;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final int[] mBuckets = new int[BUCKET_COUNT];
+    private int mFrameCount;
+    private int mJankyFrameCount;
+    private int mDroppedFrameCount;
+    private long mTotalDurationNanos;
+    private long mMaxDurationNanos;
+
+    /**
+     * Clears all the recorded frames.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = 0;
+        }
+        mFrameCount = 0;
+        mJankyFrameCount = 0;
+        mDroppedFrameCount = 0;
+        mTotalDurationNanos = 0;
+        mMaxDurationNanos = 0;
+    }
+
+    /**
+     * Records a frame.
+     *
+     * @param durationNanos      time since the previous frame
+     * @param frameIntervalNanos expected time between two frames at the display refresh rate
+     */
+    public void record(long durationNanos, long frameIntervalNanos) {
+        if (durationNanos < 0) {
+            return;
+        }
+        mBuckets[(int) Math.min(durationNanos / NANOS_PER_MILLI, BUCKET_COUNT - 1)]++;
+        mFrameCount++;
+        mTotalDurationNanos += durationNanos;
+        mMaxDurationNanos = Math.max(mMaxDurationNanos, durationNanos);
+        if (frameIntervalNanos > 0 && durationNanos > frameIntervalNanos * JANK_FACTOR) {
+            mJankyFrameCount++;
+            // Every vsync elapsed beyond the expected one is a frame that was never rendered
+            mDroppedFrameCount += (int) ((durationNanos + frameIntervalNanos / 2) / frameIntervalNanos) - 1;
+        }
+    }
+
+    /**
+     * Copies the frames recorded by another histogram into this one.
+     *
+     * @param other histogram to copy
+     */
+    public void set(FrameHistogram other) {
+        System.arraycopy(other.mBuckets, 0, mBuckets, 0, BUCKET_COUNT);
+        mFrameCount = other.mFrameCount;
+        mJankyFrameCount = other.mJankyFrameCount;
+        mDroppedFrameCount = other.mDroppedFrameCount;
+        mTotalDurationNanos = other.mTotalDurationNanos;
+        mMaxDurationNanos = other.mMaxDurationNanos;
+    }
+
+    /**
+     * @return the number of recorded frames
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return the number of frames that missed at least one vsync
+     */
+    public int getJankyFrameCount() {
+        return mJankyFrameCount;
+    }
+
+    /**
+     * @return the number of vsyncs for which no frame was rendered
+     */
+    public int getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    /**
+     * @return the longest recorded frame duration in nanoseconds
+     */
+    public long getMaxFrameDurationNanos() {
+        return mMaxDurationNanos;
+    }
+
+    /**
+     * @return the average recorded frame duration in nanoseconds
+     */
+    public long getAverageFrameDurationNanos() {
+        return mFrameCount > 0 ? mTotalDurationNanos / mFrameCount : 0;
+    }
+
+    /**
+     * @param millis duration in milliseconds
+     * @return the number of frames lasting [millis, millis + 1) ms, or longer for the last bucket
+     */
+    public int getFrameCount(int millis) {
+        return mBuckets[Math.min(Math.max(millis, 0), BUCKET_COUNT - 1)];
+    }
+
+    /**
+     * Returns the duration under which the given percentage of the recorded frames lasted.
+     *
+     * @param percentile percentage, from 0 to 100
+     * @return the upper bound of the bucket containing the percentile, in milliseconds
+     */
+    public int getPercentileMillis(float percentile) {
+        if (mFrameCount == 0) {
+            return 0;
+        }
+        final int threshold = (int) Math.ceil(mFrameCount * Math.min(Math.max(percentile, 0), 100) / 100f);
+        int count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets[i];
+            if (count >= threshold && count > 0) {
+                return i + 1;
+            }
+        }
+        return BUCKET_COUNT;
+    }
+}
@@ -0,0 +1,177 @@
+package com.sothree.slidinguppanel.core;
+
+import java.util.Arrays;
+
+/**
+ * Caches the heights of the items of a list by adapter position, to compute the exact scroll
+ * offset of lists with rows of different heights. Heights are recorded as items show up, and the
+ * sums of heights above the first and below the last visible item are maintained incrementally,
+ * so a query only costs the number of positions scrolled since the previous one.
+ *
+ * Items that were never recorded are counted with the average height of the recorded ones.
+ */
+public final class ItemHeightCache {
+
+    private static final int UNKNOWN = -1;
+
+    private int[] mHeights = new int[0];
+    private int mItemCount;
+    private long mKnownSum;
+    private int mKnownCount;
+
+    private final Cursor mTopCursor = new Cursor();
+    private final Cursor mBottomCursor = new Cursor();
+
+    /**
+     * Sum of the heights of the items in [0, position), split into recorded and unknown items.
+     */
+    private final class Cursor {
+        int position;
+        long knownSum;
+        int unknownCount;
+
+        void reset() {
+            position = 0;
+            knownSum = 0;
+            unknownCount = 0;
+        }
+
+        long moveTo(int target) {
+            while (position < target) {
+                add(position++, 1);
+            }
+            while (position > target) {
+                add(--position, -1);
+            }
+            return knownSum + unknownCount * getAverageHeight();
+        }
+
+        private void add(int pos, int sign) {
+            final int height = mHeights[pos];
+            if (height == UNKNOWN) {
+                unknownCount += sign;
+            } else {
+                knownSum += sign * height;
+            }
+        }
+
+        void onHeightChanged(int pos, int oldHeight, int newHeight) {
+            if (pos >= position) {
+                return;
+            }
+            if (oldHeight == UNKNOWN) {
+                unknownCount--;
+            } else {
+                knownSum -= oldHeight;
+            }
+            knownSum += newHeight;
+        }
+    }
+
+    /**
+     * Sets the number of items of the list. Changing it clears the recorded heights, since the
+     * positions are likely to refer to different items.
+     *
+     * @param itemCount number of items
+     */
+    public void setItemCount(int itemCount) {
+        if (itemCount < 0) {
+            throw new IllegalArgumentException("Item count may not be negative");
+        }
+        if (itemCount == mItemCount) {
+            return;
+        }
+        mItemCount = itemCount;
+        if (mHeights.length < itemCount) {
+            mHeights = new int[Math.max(itemCount, mHeights.length * 2)];
+        }
+        clear();
+    }
+
+    /**
+     * @return the number of items of the list
+     */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * Forgets all the recorded heights.
+     */
+    public void clear() {
+        Arrays.fill(mHeights, UNKNOWN);
+        mKnownSum = 0;
+        mKnownCount = 0;
+        mTopCursor.reset();
+        mBottomCursor.reset();
+    }
+
+    /**
+     * Records the height of an item.
+     *
+     * @param position adapter position of the item
+     * @param height   height of the item in pixels
+     */
+    public void put(int position, int height) {
+        if (position < 0 || position >= mItemCount || height < 0) {
+            return;
+        }
+        final int old = mHeights[position];
+        if (old == height) {
+            return;
+        }
+        mHeights[position] = height;
+        if (old == UNKNOWN) {
+            mKnownCount++;
+        } else {
+            mKnownSum -= old;
+        }
+        mKnownSum += height;
+        mTopCursor.onHeightChanged(position, old, height);
+        mBottomCursor.onHeightChanged(position, old, height);
+    }
+
+    /**
+     * @param position adapter position of the item
+     * @return true if the height of the item was recorded
+     */
+    public boolean contains(int position) {
+        return position >= 0 && position < mItemCount && mHeights[position] != UNKNOWN;
+    }
+
+    /**
+     * @return the average height of the recorded items, 0 if none was recorded
+     */
+    public int getAverageHeight() {
+        return mKnownCount > 0 ? (int) (mKnownSum / mKnownCount) : 0;
+    }
+
+    /**
+     * Returns the total height of the items above the given one. Meant to be called with the
+     * first visible position.
+     *
+     * @param position adapter position of the item
+     * @return the sum of the heights of the items in [0, position)
+     */
+    public long getHeightAbove(int position) {
+        return mTopCursor.moveTo(clampPosition(position));
+    }
+
+    /**
+     * Returns the total height of the items below the given one. Meant to be called with the
+     * last visible position.
+     *
+     * @param position adapter position of the item
+     * @return the sum of the heights of the items in (position, item count)
+     */
+    public long getHeightBelow(int position) {
+        final int pos = clampPosition(position + 1);
+        final long above = mBottomCursor.moveTo(pos);
+        final long total = mKnownSum + (long) (mItemCount - mKnownCount) * getAverageHeight();
+        return total - above;
+    }
+
+    private int clampPosition(int position) {
+        return Math.max(0, Math.min(position, mItemCount));
+    }
+}
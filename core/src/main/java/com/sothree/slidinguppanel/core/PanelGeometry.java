@@ -0,0 +1,73 @@
+package com.sothree.slidinguppanel.core;
+
+/**
+ * Geometry of the sliding panel: conversions between the slide offset of the panel and the top
+ * position of the sliding view, in the coordinates of the layout.
+ *
+ * The slide offset is 0 when the panel is collapsed and 1 when it is expanded. It is negative
+ * when the panel is hidden.
+ */
+public final class PanelGeometry {
+
+    private PanelGeometry() {
+    }
+
+    /**
+     * Computes the top position of the panel based on the slide offset.
+     *
+     * @param slideOffset     slide offset of the panel
+     * @param slideRange      how far in pixels the panel may move
+     * @param panelHeight     collapsed panel height
+     * @param slideableHeight measured height of the sliding view
+     * @param layoutHeight    measured height of the layout
+     * @param paddingTop      top padding of the layout
+     * @param paddingBottom   bottom padding of the layout
+     * @param isSlidingUp     true if the panel slides up from the bottom of the layout
+     * @return the top position of the sliding view
+     */
+    public static int computePanelTopPosition(float slideOffset, int slideRange, int panelHeight,
+                                              int slideableHeight, int layoutHeight,
+                                              int paddingTop, int paddingBottom,
+                                              boolean isSlidingUp) {
+        int slidePixelOffset = (int) (slideOffset * slideRange);
+        // Compute the top of the panel if its collapsed
+        return isSlidingUp
+                ? layoutHeight - paddingBottom - panelHeight - slidePixelOffset
+                : paddingTop - slideableHeight + panelHeight + slidePixelOffset;
+    }
+
+    /**
+     * Computes the slide offset based on the top position of the panel.
+     *
+     * @param topPosition       top position of the sliding view
+     * @param topBoundCollapsed top position of the sliding view when collapsed
+     * @param slideRange        how far in pixels the panel may move
+     * @param isSlidingUp       true if the panel slides up from the bottom of the layout
+     * @return the slide offset
+     */
+    public static float computeSlideOffset(int topPosition, int topBoundCollapsed, int slideRange,
+                                           boolean isSlidingUp) {
+        // Determine the new slide offset based on the collapsed top position and the new required
+        // top position
+        return (isSlidingUp
+                ? (float) (topBoundCollapsed - topPosition) / slideRange
+                : (float) (topPosition - topBoundCollapsed) / slideRange);
+    }
+
+    /**
+     * Clamps the top position of the panel between its collapsed and expanded positions.
+     *
+     * @param top          attempted top position of the sliding view
+     * @param collapsedTop top position of the sliding view when collapsed
+     * @param expandedTop  top position of the sliding view when expanded
+     * @param isSlidingUp  true if the panel slides up from the bottom of the layout
+     * @return the clamped top position
+     */
+    public static int clampPanelTop(int top, int collapsedTop, int expandedTop, boolean isSlidingUp) {
+        if (isSlidingUp) {
+            return Math.min(Math.max(top, expandedTop), collapsedTop);
+        } else {
+            return Math.min(Math.max(top, collapsedTop), expandedTop);
+        }
+    }
+}
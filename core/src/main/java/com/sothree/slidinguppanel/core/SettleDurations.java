@@ -0,0 +1,112 @@
+package com.sothree.slidinguppanel.core;
+
+/**
+ * Durations of the animations settling a dragged view into place.
+ */
+public final class SettleDurations {
+
+    public static final int BASE_SETTLE_DURATION = 256; // ms
+    public static final int MAX_SETTLE_DURATION = 600; // ms
+
+    private SettleDurations() {
+    }
+
+    /**
+     * Computes the duration of a settle animation, weighting the duration along each axis by
+     * the velocity along this axis, or by the distance along this axis if there is no velocity.
+     *
+     * @param dx              Distance to travel along the X axis
+     * @param dy              Distance to travel along the Y axis
+     * @param xvel            Velocity along the X axis in pixels per second
+     * @param yvel            Velocity along the Y axis in pixels per second
+     * @param minVelocity     Minimum significant velocity in pixels per second
+     * @param maxVelocity     Maximum velocity in pixels per second
+     * @param horizontalRange Horizontal range of motion of the view
+     * @param verticalRange   Vertical range of motion of the view
+     * @param parentWidth     Width of the parent view
+     * @return the duration in milliseconds
+     */
+    public static int computeSettleDuration(int dx, int dy, int xvel, int yvel,
+                                            int minVelocity, int maxVelocity,
+                                            int horizontalRange, int verticalRange,
+                                            int parentWidth) {
+        xvel = clampMag(xvel, minVelocity, maxVelocity);
+        yvel = clampMag(yvel, minVelocity, maxVelocity);
+        final int absDx = Math.abs(dx);
+        final int absDy = Math.abs(dy);
+        final int absXVel = Math.abs(xvel);
+        final int absYVel = Math.abs(yvel);
+        final int addedVel = absXVel + absYVel;
+        final int addedDistance = absDx + absDy;
+
+        final float xweight = xvel != 0 ? (float) absXVel / addedVel :
+                (float) absDx / addedDistance;
+        final float yweight = yvel != 0 ? (float) absYVel / addedVel :
+                (float) absDy / addedDistance;
+
+        int xduration = computeAxisDuration(dx, xvel, horizontalRange, parentWidth);
+        int yduration = computeAxisDuration(dy, yvel, verticalRange, parentWidth);
+
+        return (int) (xduration * xweight + yduration * yweight);
+    }
+
+    /**
+     * Computes the duration of a settle animation along one axis.
+     *
+     * @param delta       Distance to travel
+     * @param velocity    Velocity in pixels per second
+     * @param motionRange Range of motion of the view along this axis
+     * @param parentWidth Width of the parent view
+     * @return the duration in milliseconds
+     */
+    public static int computeAxisDuration(int delta, int velocity, int motionRange, int parentWidth) {
+        if (delta == 0) {
+            return 0;
+        }
+
+        final int width = parentWidth;
+        final int halfWidth = width / 2;
+        final float distanceRatio = Math.min(1f, (float) Math.abs(delta) / width);
+        final float distance = halfWidth + halfWidth *
+                distanceInfluenceForSnapDuration(distanceRatio);
+
+        int duration;
+        velocity = Math.abs(velocity);
+        if (velocity > 0) {
+            duration = 4 * Math.round(1000 * Math.abs(distance / velocity));
+        } else {
+            final float range = (float) Math.abs(delta) / motionRange;
+            duration = (int) ((range + 1) * BASE_SETTLE_DURATION);
+        }
+        return Math.min(duration, MAX_SETTLE_DURATION);
+    }
+
+    /**
+     * Eases the influence of the distance on the duration of the settle.
+     *
+     * @param f Distance ratio, from 0 to 1
+     * @return the influence, from about -0.23 to 0.23
+     */
+    public static float distanceInfluenceForSnapDuration(float f) {
+        f -= 0.5f; // center the values about 0.
+        f *= 0.3f * Math.PI / 2.0f;
+        return (float) Math.sin(f);
+    }
+
+    /**
+     * Clamp the magnitude of value for absMin and absMax.
+     * If the value is below the minimum, it will be clamped to zero.
+     * If the value is above the maximum, it will be clamped to the maximum.
+     *
+     * @param value  Value to clamp
+     * @param absMin Absolute value of the minimum significant value to return
+     * @param absMax Absolute value of the maximum value to return
+     * @return The clamped value with the same sign as <code>value</code>
+     */
+    public static int clampMag(int value, int absMin, int absMax) {
+        final int absValue = Math.abs(value);
+        if (absValue < absMin) return 0;
+        if (absValue > absMax) return value > 0 ? absMax : -absMax;
+        return value;
+    }
+}
@@ -0,0 +1,163 @@
+package com.sothree.slidinguppanel.core;
+
+import java.util.Arrays;
+
+/**
+ * Decides where the panel settles when the user releases it.
+ */
+public final class SnapTargets {
+
+    /**
+     * Fraction of its velocity a projected fling keeps after each millisecond, the one of a
+     * normal scroll view fling
+     */
+    public static final float DEFAULT_DECELERATION_RATE = 0.998f;
+
+    private SnapTargets() {
+    }
+
+    /**
+     * Computes the slide offset the panel settles at after a release.
+     *
+     * @param slideOffset current slide offset of the panel
+     * @param anchorPoint anchor point of the panel, 1 if there is none
+     * @param direction   release velocity, positive in the expanding direction
+     * @return the slide offset to settle at
+     */
+    public static float computeReleaseOffset(float slideOffset, float anchorPoint, float direction) {
+        if (direction > 0 && slideOffset <= anchorPoint) {
+            // swipe up -> expand and stop at anchor point
+            return anchorPoint;
+        } else if (direction > 0 && slideOffset > anchorPoint) {
+            // swipe up past anchor -> expand
+            return 1.0f;
+        } else if (direction < 0 && slideOffset >= anchorPoint) {
+            // swipe down -> collapse and stop at anchor point
+            return anchorPoint;
+        } else if (direction < 0 && slideOffset < anchorPoint) {
+            // swipe down past anchor -> collapse
+            return 0.0f;
+        } else if (slideOffset >= (1.f + anchorPoint) / 2) {
+            // zero velocity, and far enough from anchor point => expand to the top
+            return 1.0f;
+        } else if (slideOffset >= anchorPoint / 2) {
+            // zero velocity, and close enough to anchor point => go to anchor
+            return anchorPoint;
+        } else {
+            // settle at the bottom
+            return 0.0f;
+        }
+    }
+
+    /**
+     * Computes the slide offset the panel settles at after a release, given all the offsets it
+     * can stop at. A release in the expanding direction goes to the next stop up, a release in the
+     * collapsing direction to the next stop down, and a release without velocity to the nearest
+     * stop, going up when exactly halfway.
+     *
+     * @param slideOffset current slide offset of the panel
+     * @param stops       offsets the panel can stop at, sorted ascending without duplicates, at
+     *                    least one
+     * @param direction   release velocity, positive in the expanding direction
+     * @return the slide offset to settle at
+     */
+    public static float computeReleaseOffset(float slideOffset, float[] stops, float direction) {
+        checkStops(stops);
+        if (direction > 0) {
+            return stops[ceilingIndex(stops, slideOffset)];
+        } else if (direction < 0) {
+            return stops[floorIndex(stops, slideOffset)];
+        } else {
+            return stops[nearestIndex(stops, slideOffset)];
+        }
+    }
+
+    private static void checkStops(float[] stops) {
+        if (stops.length == 0) {
+            throw new IllegalArgumentException("There must be at least one stop");
+        }
+    }
+
+    /**
+     * @param stops sorted offsets
+     * @param value slide offset
+     * @return the index of the lowest stop at or above the value, or of the highest stop if none,
+     * or -1 if there are no stops
+     */
+    public static int ceilingIndex(float[] stops, float value) {
+        final int index = Arrays.binarySearch(stops, value);
+        return index >= 0 ? index : Math.min(-index - 1, stops.length - 1);
+    }
+
+    /**
+     * @param stops sorted offsets
+     * @param value slide offset
+     * @return the index of the highest stop at or below the value, or of the lowest stop if none,
+     * or -1 if there are no stops
+     */
+    public static int floorIndex(float[] stops, float value) {
+        final int index = Arrays.binarySearch(stops, value);
+        return index >= 0 ? index : Math.max(-index - 2, Math.min(0, stops.length - 1));
+    }
+
+    /**
+     * @param stops sorted offsets
+     * @param value slide offset
+     * @return the index of the stop nearest to the value, the upper one when exactly halfway, or -1
+     * if there are no stops
+     */
+    public static int nearestIndex(float[] stops, float value) {
+        final int index = Arrays.binarySearch(stops, value);
+        if (index >= 0) {
+            return index;
+        }
+        final int upper = -index - 1;
+        if (upper == stops.length) {
+            return stops.length - 1;
+        } else if (upper == 0) {
+            return 0;
+        }
+        return value >= (stops[upper - 1] + stops[upper]) / 2 ? upper : upper - 1;
+    }
+
+    /**
+     * Projects where a fling would come to rest if the panel decelerated freely, with its velocity
+     * decaying exponentially by the given rate every millisecond.
+     *
+     * @param slideOffset      current slide offset of the panel
+     * @param velocity         release velocity in slide offsets per second
+     * @param decelerationRate fraction of the velocity kept after each millisecond, below 1
+     * @return the projected slide offset, not clamped
+     */
+    public static float projectOffset(float slideOffset, float velocity, float decelerationRate) {
+        return slideOffset + velocity / 1000f * decelerationRate / (1f - decelerationRate);
+    }
+
+    /**
+     * Computes the slide offset the panel settles at after a release, going to the stop nearest to
+     * where the fling would come to rest. A fling always goes at least to the next stop in its
+     * direction, and a release without velocity goes to the nearest stop.
+     *
+     * @param slideOffset      current slide offset of the panel
+     * @param stops            offsets the panel can stop at, sorted ascending without duplicates,
+     *                         at least one
+     * @param velocity         release velocity in slide offsets per second, positive in the
+     *                         expanding direction
+     * @param decelerationRate fraction of the velocity kept after each millisecond, below 1
+     * @return the slide offset to settle at
+     */
+    public static float computeProjectedReleaseOffset(float slideOffset, float[] stops, float velocity,
+                                                      float decelerationRate) {
+        checkStops(stops);
+        if (velocity == 0) {
+            return stops[nearestIndex(stops, slideOffset)];
+        }
+        int index = nearestIndex(stops, projectOffset(slideOffset, velocity, decelerationRate));
+        if (velocity > 0) {
+            index = Math.max(index, ceilingIndex(stops, slideOffset));
+        } else {
+            index = Math.min(index, floorIndex(stops, slideOffset));
+        }
+        return stops[index];
+    }
+}
@@ -0,0 +1,181 @@
+package com.sothree.slidinguppanel.core;
+
+/**
+ * Estimates the velocity of a pointer along one axis from its recent positions. The samples are
+ * kept in a fixed-size ring buffer, and the velocity is the slope at the newest sample of the
+ * least squares quadratic fit of the samples within the horizon, like the platform
+ * VelocityTracker does. Adding samples and computing the velocity does not allocate, and the
+ * result only depends on the samples. The curvature of the fit gives the acceleration.
+ */
+public final class VelocityEstimator {
+
+    /**
+     * Default number of samples kept
+     */
+    public static final int DEFAULT_CAPACITY = 20;
+
+    /**
+     * Default age of the oldest sample taken into account, relative to the newest one
+     */
+    public static final long DEFAULT_HORIZON_MILLIS = 100;
+
+    private final long[] mTimes;
+    private final float[] mPositions;
+    private final long mHorizonMillis;
+    private int mNewest = -1;
+    private int mCount;
+
+    // Result of the last fit, valid until the samples change
+    private boolean mFitValid;
+    private float mVelocity;
+    private float mAcceleration;
+
+    public VelocityEstimator() {
+        this(DEFAULT_CAPACITY, DEFAULT_HORIZON_MILLIS);
+    }
+
+    /**
+     * @param capacity      maximum number of samples kept, at least 2
+     * @param horizonMillis age of the oldest sample taken into account, relative to the newest one
+     */
+    public VelocityEstimator(int capacity, long horizonMillis) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        if (horizonMillis <= 0) {
+            throw new IllegalArgumentException("Horizon must be positive");
+        }
+        mTimes = new long[capacity];
+        mPositions = new float[capacity];
+        mHorizonMillis = horizonMillis;
+    }
+
+    /**
+     * Forgets all the samples.
+     */
+    public void clear() {
+        mNewest = -1;
+        mCount = 0;
+        mFitValid = false;
+    }
+
+    /**
+     * @return the number of samples kept
+     */
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * Adds a sample. A sample older than the newest one starts over, a sample at the same time
+     * replaces it.
+     *
+     * @param timeMillis time of the sample in milliseconds
+     * @param position   position of the pointer
+     */
+    public void addSample(long timeMillis, float position) {
+        if (mCount > 0) {
+            final long newestTime = mTimes[mNewest];
+            if (timeMillis == newestTime) {
+                mPositions[mNewest] = position;
+                mFitValid = false;
+                return;
+            } else if (timeMillis < newestTime) {
+                clear();
+            }
+        }
+        mNewest = (mNewest + 1) % mTimes.length;
+        mTimes[mNewest] = timeMillis;
+        mPositions[mNewest] = position;
+        if (mCount < mTimes.length) {
+            mCount++;
+        }
+        mFitValid = false;
+    }
+
+    /**
+     * Computes the velocity at the newest sample.
+     *
+     * @return the velocity in position units per second, 0 without at least two samples within
+     * the horizon
+     */
+    public float computeVelocity() {
+        fit();
+        return mVelocity;
+    }
+
+    /**
+     * Computes the acceleration at the newest sample.
+     *
+     * @return the acceleration in position units per second squared, 0 without at least three
+     * samples within the horizon
+     */
+    public float computeAcceleration() {
+        fit();
+        return mAcceleration;
+    }
+
+    private void fit() {
+        if (mFitValid) {
+            return;
+        }
+        mFitValid = true;
+        mVelocity = 0;
+        mAcceleration = 0;
+        if (mCount < 2) {
+            return;
+        }
+        final int capacity = mTimes.length;
+        final long newestTime = mTimes[mNewest];
+        final float newestPosition = mPositions[mNewest];
+
+        // Sums for the normal equations, with times in seconds and positions relative to the
+        // newest sample to keep them small
+        double n = 0, st = 0, st2 = 0, st3 = 0, st4 = 0, sy = 0, sty = 0, st2y = 0;
+        for (int i = 0; i < mCount; i++) {
+            final int index = (mNewest - i + capacity) % capacity;
+            final long age = newestTime - mTimes[index];
+            if (age > mHorizonMillis) {
+                break;
+            }
+            final double t = -age / 1000.0;
+            final double y = mPositions[index] - newestPosition;
+            final double t2 = t * t;
+            n++;
+            st += t;
+            st2 += t2;
+            st3 += t2 * t;
+            st4 += t2 * t2;
+            sy += y;
+            sty += t * y;
+            st2y += t2 * y;
+        }
+        if (n < 2) {
+            return;
+        }
+
+        if (n >= 3) {
+            // Quadratic fit y = a + b t + c t^2, solved for b and c with Cramer's rule
+            final double det = n * (st2 * st4 - st3 * st3)
+                    - st * (st * st4 - st3 * st2)
+                    + st2 * (st * st3 - st2 * st2);
+            if (Math.abs(det) > 1e-12) {
+                final double detB = n * (sty * st4 - st3 * st2y)
+                        - sy * (st * st4 - st3 * st2)
+                        + st2 * (st * st2y - sty * st2);
+                final double detC = n * (st2 * st2y - sty * st3)
+                        - st * (st * st2y - sty * st2)
+                        + sy * (st * st3 - st2 * st2);
+                mVelocity = (float) (detB / det);
+                mAcceleration = (float) (2 * detC / det);
+                return;
+            }
+        }
+
+        // Linear fit y = a + b t
+        final double det = n * st2 - st * st;
+        if (Math.abs(det) > 1e-12) {
+            mVelocity = (float) ((n * sty - st * sy) / det);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.sothree.slidinguppanel.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ItemHeightCacheTest {
+
+    private static ItemHeightCache cacheOf(int itemCount, int height) {
+        ItemHeightCache cache = new ItemHeightCache();
+        cache.setItemCount(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            cache.put(i, height);
+        }
+        return cache;
+    }
+
+    @Test
+    public void empty() {
+        ItemHeightCache cache = new ItemHeightCache();
+        cache.setItemCount(10);
+        assertEquals(0, cache.getAverageHeight());
+        assertEquals(0, cache.getHeightAbove(5));
+        assertEquals(0, cache.getHeightBelow(5));
+    }
+
+    @Test
+    public void allRecorded() {
+        ItemHeightCache cache = cacheOf(10, 20);
+        assertEquals(0, cache.getHeightAbove(0));
+        assertEquals(100, cache.getHeightAbove(5));
+        assertEquals(80, cache.getHeightBelow(5));
+        assertEquals(0, cache.getHeightBelow(9));
+    }
+
+    @Test
+    public void putOutOfOrder() {
+        ItemHeightCache cache = new ItemHeightCache();
+        cache.setItemCount(10);
+        cache.put(5, 30);
+        cache.put(2, 10);
+        cache.put(8, 50);
+        assertEquals(30, cache.getAverageHeight());
+        // 2 and 5 recorded, 0, 1, 3 and 4 at the average
+        assertEquals(10 + 30 + 4 * 30, cache.getHeightAbove(6));
+        // 8 recorded, 7 and 9 at the average
+        assertEquals(50 + 2 * 30, cache.getHeightBelow(6));
+    }
+
+    @Test
+    public void putBehindTheCursors() {
+        ItemHeightCache cache = new ItemHeightCache();
+        cache.setItemCount(10);
+        cache.put(4, 10);
+        assertEquals(40, cache.getHeightAbove(4));
+        assertEquals(50, cache.getHeightBelow(4));
+        // Recorded after the cursors moved past them
+        cache.put(0, 30);
+        cache.put(1, 20);
+        assertEquals(30 + 20 + 2 * 20, cache.getHeightAbove(4));
+        assertEquals(5 * 20, cache.getHeightBelow(4));
+    }
+
+    @Test
+    public void changeTheHeightOfACountedRow() {
+        ItemHeightCache cache = cacheOf(10, 10);
+        assertEquals(50, cache.getHeightAbove(5));
+        assertEquals(40, cache.getHeightBelow(5));
+        cache.put(2, 30);
+        assertEquals(70, cache.getHeightAbove(5));
+        assertEquals(40, cache.getHeightBelow(5));
+        cache.put(8, 0);
+        assertEquals(70, cache.getHeightAbove(5));
+        assertEquals(30, cache.getHeightBelow(5));
+    }
+
+    @Test
+    public void heightBelowPastTheLastKnownRow() {
+        ItemHeightCache cache = new ItemHeightCache();
+        cache.setItemCount(10);
+        for (int i = 0; i < 3; i++) {
+            cache.put(i, 20);
+        }
+        assertEquals(7 * 20, cache.getHeightBelow(2));
+        assertEquals(2 * 20, cache.getHeightBelow(7));
+        assertEquals(0, cache.getHeightBelow(9));
+        assertEquals(0, cache.getHeightBelow(15));
+        assertEquals(10 * 20, cache.getHeightBelow(-1));
+    }
+
+    @Test
+    public void positionsAreClamped() {
+        ItemHeightCache cache = cacheOf(10, 10);
+        assertEquals(0, cache.getHeightAbove(-3));
+        assertEquals(100, cache.getHeightAbove(10));
+        assertEquals(100, cache.getHeightAbove(15));
+    }
+
+    @Test
+    public void cursorsMoveBothWays() {
+        ItemHeightCache cache = cacheOf(10, 10);
+        assertEquals(80, cache.getHeightAbove(8));
+        assertEquals(20, cache.getHeightAbove(2));
+        assertEquals(70, cache.getHeightBelow(2));
+        assertEquals(10, cache.getHeightBelow(8));
+        assertEquals(50, cache.getHeightBelow(4));
+    }
+
+    @Test
+    public void invalidPutsAreIgnored() {
+        ItemHeightCache cache = cacheOf(5, 10);
+        cache.put(-1, 100);
+        cache.put(5, 100);
+        cache.put(2, -1);
+        assertEquals(10, cache.getAverageHeight());
+        assertEquals(50, cache.getHeightAbove(5));
+    }
+
+    @Test
+    public void changingTheItemCountClears() {
+        ItemHeightCache cache = cacheOf(5, 10);
+        assertEquals(30, cache.getHeightAbove(3));
+        cache.setItemCount(20);
+        assertEquals(20, cache.getItemCount());
+        assertFalse(cache.contains(0));
+        assertEquals(0, cache.getAverageHeight());
+        assertEquals(0, cache.getHeightAbove(3));
+        cache.put(15, 40);
+        assertTrue(cache.contains(15));
+        assertEquals(10 * 40, cache.getHeightAbove(10));
+        cache.setItemCount(2);
+        assertFalse(cache.contains(15));
+        cache.put(3, 40);
+        assertFalse(cache.contains(3));
+        assertEquals(0, cache.getHeightBelow(0));
+    }
+
+    @Test
+    public void sameItemCountKeepsTheHeights() {
+        ItemHeightCache cache = cacheOf(5, 10);
+        cache.setItemCount(5);
+        assertTrue(cache.contains(4));
+        assertEquals(50, cache.getHeightAbove(5));
+    }
+
+    @Test
+    public void clear() {
+        ItemHeightCache cache = cacheOf(10, 10);
+        assertEquals(50, cache.getHeightAbove(5));
+        assertEquals(40, cache.getHeightBelow(5));
+        cache.clear();
+        assertFalse(cache.contains(0));
+        assertEquals(10, cache.getItemCount());
+        assertEquals(0, cache.getHeightAbove(5));
+        cache.put(0, 20);
+        assertEquals(100, cache.getHeightAbove(5));
+        assertEquals(80, cache.getHeightBelow(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeItemCount() {
+        new ItemHeightCache().setItemCount(-1);
+    }
+
+    @Test
+    public void matchesAFullRecount() {
+        final Random random = new Random(42);
+        final int itemCount = 200;
+        ItemHeightCache cache = new ItemHeightCache();
+        cache.setItemCount(itemCount);
+        int[] heights = new int[itemCount];
+        Arrays.fill(heights, -1);
+        int first = 0;
+        for (int step = 0; step < 2000; step++) {
+            // Scroll by a few rows, and record the visible ones
+            first = Math.max(0, Math.min(itemCount - 10, first + random.nextInt(21) - 10));
+            final int last = first + 9;
+            for (int i = first; i <= last; i++) {
+                final int height = random.nextInt(10) == 0 ? random.nextInt(200) : 50 + i % 7;
+                cache.put(i, height);
+                heights[i] = height;
+            }
+            final int average = average(heights);
+            assertEquals(sum(heights, 0, first, average), cache.getHeightAbove(first));
+            assertEquals(sum(heights, last + 1, itemCount, average), cache.getHeightBelow(last));
+        }
+    }
+
+    private static int average(int[] heights) {
+        long sum = 0;
+        int count = 0;
+        for (int height : heights) {
+            if (height >= 0) {
+                sum += height;
+                count++;
+            }
+        }
+        return count > 0 ? (int) (sum / count) : 0;
+    }
+
+    private static long sum(int[] heights, int from, int to, int average) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += heights[i] >= 0 ? heights[i] : average;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,80 @@
+package com.sothree.slidinguppanel.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PanelGeometryTest {
+
+    private static final int SLIDE_RANGE = 600;
+    private static final int PANEL_HEIGHT = 100;
+    private static final int SLIDEABLE_HEIGHT = 700;
+    private static final int LAYOUT_HEIGHT = 800;
+    private static final int PADDING_TOP = 10;
+    private static final int PADDING_BOTTOM = 20;
+
+    private static int top(float slideOffset, boolean isSlidingUp) {
+        return PanelGeometry.computePanelTopPosition(slideOffset, SLIDE_RANGE, PANEL_HEIGHT,
+                SLIDEABLE_HEIGHT, LAYOUT_HEIGHT, PADDING_TOP, PADDING_BOTTOM, isSlidingUp);
+    }
+
+    private static float offset(int top, boolean isSlidingUp) {
+        return PanelGeometry.computeSlideOffset(top, top(0, isSlidingUp), SLIDE_RANGE, isSlidingUp);
+    }
+
+    @Test
+    public void topPositionSlidingUp() {
+        assertEquals(680, top(0, true));
+        assertEquals(380, top(0.5f, true));
+        assertEquals(80, top(1, true));
+    }
+
+    @Test
+    public void topPositionSlidingDown() {
+        assertEquals(-590, top(0, false));
+        assertEquals(-290, top(0.5f, false));
+        assertEquals(10, top(1, false));
+    }
+
+    @Test
+    public void hiddenPanelIsPastTheCollapsedPosition() {
+        assertEquals(780, top(-PANEL_HEIGHT / (float) SLIDE_RANGE, true));
+        assertEquals(-690, top(-PANEL_HEIGHT / (float) SLIDE_RANGE, false));
+    }
+
+    @Test
+    public void slideOffset() {
+        assertEquals(0, offset(680, true), 0);
+        assertEquals(1, offset(80, true), 0);
+        assertEquals(0, offset(-590, false), 0);
+        assertEquals(1, offset(10, false), 0);
+    }
+
+    @Test
+    public void slideOffsetIsTheInverseOfTheTopPosition() {
+        for (boolean isSlidingUp : new boolean[]{true, false}) {
+            for (int i = 0; i <= 10; i++) {
+                final float slideOffset = i / 10f;
+                assertEquals(slideOffset, offset(top(slideOffset, isSlidingUp), isSlidingUp), 1f / SLIDE_RANGE);
+            }
+        }
+    }
+
+    @Test
+    public void clampSlidingUp() {
+        assertEquals(80, PanelGeometry.clampPanelTop(0, 680, 80, true));
+        assertEquals(80, PanelGeometry.clampPanelTop(80, 680, 80, true));
+        assertEquals(300, PanelGeometry.clampPanelTop(300, 680, 80, true));
+        assertEquals(680, PanelGeometry.clampPanelTop(680, 680, 80, true));
+        assertEquals(680, PanelGeometry.clampPanelTop(750, 680, 80, true));
+    }
+
+    @Test
+    public void clampSlidingDown() {
+        assertEquals(-590, PanelGeometry.clampPanelTop(-700, -590, 10, false));
+        assertEquals(-590, PanelGeometry.clampPanelTop(-590, -590, 10, false));
+        assertEquals(-300, PanelGeometry.clampPanelTop(-300, -590, 10, false));
+        assertEquals(10, PanelGeometry.clampPanelTop(10, -590, 10, false));
+        assertEquals(10, PanelGeometry.clampPanelTop(50, -590, 10, false));
+    }
+}
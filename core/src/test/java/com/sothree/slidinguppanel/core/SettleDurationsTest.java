@@ -0,0 +1,94 @@
+package com.sothree.slidinguppanel.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SettleDurationsTest {
+
+    private static final int MIN_VELOCITY = 100;
+    private static final int MAX_VELOCITY = 8000;
+    private static final int RANGE = 600;
+    private static final int WIDTH = 480;
+
+    @Test
+    public void noDistance() {
+        assertEquals(0, SettleDurations.computeAxisDuration(0, 0, RANGE, WIDTH));
+        assertEquals(0, SettleDurations.computeAxisDuration(0, 1000, RANGE, WIDTH));
+        assertEquals(0, SettleDurations.computeSettleDuration(0, 0, 0, 0,
+                MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH));
+    }
+
+    @Test
+    public void withoutVelocityDependsOnTheRange() {
+        assertEquals(384, SettleDurations.computeAxisDuration(300, 0, RANGE, WIDTH));
+        assertEquals(512, SettleDurations.computeAxisDuration(600, 0, RANGE, WIDTH));
+        assertEquals(384, SettleDurations.computeAxisDuration(-300, 0, RANGE, WIDTH));
+    }
+
+    @Test
+    public void fasterIsShorter() {
+        final int slow = SettleDurations.computeAxisDuration(300, 2000, RANGE, WIDTH);
+        final int fast = SettleDurations.computeAxisDuration(300, 6000, RANGE, WIDTH);
+        assertTrue(fast < slow);
+    }
+
+    @Test
+    public void negativeVelocity() {
+        assertEquals(SettleDurations.computeAxisDuration(300, 2000, RANGE, WIDTH),
+                SettleDurations.computeAxisDuration(300, -2000, RANGE, WIDTH));
+    }
+
+    @Test
+    public void durationIsCapped() {
+        assertEquals(SettleDurations.MAX_SETTLE_DURATION,
+                SettleDurations.computeAxisDuration(300, 1, RANGE, WIDTH));
+        assertEquals(SettleDurations.MAX_SETTLE_DURATION,
+                SettleDurations.computeAxisDuration(10 * RANGE, 0, RANGE, WIDTH));
+    }
+
+    @Test
+    public void verticalSettle() {
+        assertEquals(SettleDurations.computeAxisDuration(300, 0, RANGE, WIDTH),
+                SettleDurations.computeSettleDuration(0, 300, 0, 0,
+                        MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH));
+        assertEquals(SettleDurations.computeAxisDuration(300, 2000, RANGE, WIDTH),
+                SettleDurations.computeSettleDuration(0, 300, 0, 2000,
+                        MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH));
+    }
+
+    @Test
+    public void velocityBelowTheMinimumIsIgnored() {
+        assertEquals(SettleDurations.computeSettleDuration(0, 300, 0, 0,
+                        MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH),
+                SettleDurations.computeSettleDuration(0, 300, 0, MIN_VELOCITY - 1,
+                        MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH));
+    }
+
+    @Test
+    public void velocityAboveTheMaximumIsClamped() {
+        assertEquals(SettleDurations.computeSettleDuration(0, 300, 0, MAX_VELOCITY,
+                        MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH),
+                SettleDurations.computeSettleDuration(0, 300, 0, 10 * MAX_VELOCITY,
+                        MIN_VELOCITY, MAX_VELOCITY, 0, RANGE, WIDTH));
+    }
+
+    @Test
+    public void distanceInfluence() {
+        assertEquals(0, SettleDurations.distanceInfluenceForSnapDuration(0.5f), 0);
+        assertEquals(-SettleDurations.distanceInfluenceForSnapDuration(0f),
+                SettleDurations.distanceInfluenceForSnapDuration(1f), 1e-6f);
+        assertTrue(SettleDurations.distanceInfluenceForSnapDuration(1f) < 0.24f);
+    }
+
+    @Test
+    public void clampMag() {
+        assertEquals(0, SettleDurations.clampMag(50, 100, 1000));
+        assertEquals(0, SettleDurations.clampMag(-50, 100, 1000));
+        assertEquals(100, SettleDurations.clampMag(100, 100, 1000));
+        assertEquals(-500, SettleDurations.clampMag(-500, 100, 1000));
+        assertEquals(1000, SettleDurations.clampMag(5000, 100, 1000));
+        assertEquals(-1000, SettleDurations.clampMag(-5000, 100, 1000));
+    }
+}
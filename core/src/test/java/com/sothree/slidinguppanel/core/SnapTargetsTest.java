@@ -0,0 +1,148 @@
+package com.sothree.slidinguppanel.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SnapTargetsTest {
+
+    private static final float[] STOPS = {0f, 0.5f, 1f};
+    private static final float[] NO_STOPS = {};
+    private static final float RATE = SnapTargets.DEFAULT_DECELERATION_RATE;
+
+    @Test
+    public void ceilingIndex() {
+        assertEquals(0, SnapTargets.ceilingIndex(STOPS, -0.1f));
+        assertEquals(0, SnapTargets.ceilingIndex(STOPS, 0f));
+        assertEquals(1, SnapTargets.ceilingIndex(STOPS, 0.3f));
+        assertEquals(1, SnapTargets.ceilingIndex(STOPS, 0.5f));
+        assertEquals(2, SnapTargets.ceilingIndex(STOPS, 0.7f));
+        assertEquals(2, SnapTargets.ceilingIndex(STOPS, 1f));
+        assertEquals(2, SnapTargets.ceilingIndex(STOPS, 1.2f));
+    }
+
+    @Test
+    public void floorIndex() {
+        assertEquals(0, SnapTargets.floorIndex(STOPS, -0.1f));
+        assertEquals(0, SnapTargets.floorIndex(STOPS, 0f));
+        assertEquals(0, SnapTargets.floorIndex(STOPS, 0.3f));
+        assertEquals(1, SnapTargets.floorIndex(STOPS, 0.5f));
+        assertEquals(1, SnapTargets.floorIndex(STOPS, 0.7f));
+        assertEquals(2, SnapTargets.floorIndex(STOPS, 1f));
+        assertEquals(2, SnapTargets.floorIndex(STOPS, 1.2f));
+    }
+
+    @Test
+    public void nearestIndex() {
+        assertEquals(0, SnapTargets.nearestIndex(STOPS, -0.1f));
+        assertEquals(0, SnapTargets.nearestIndex(STOPS, 0f));
+        assertEquals(0, SnapTargets.nearestIndex(STOPS, 0.24f));
+        assertEquals(1, SnapTargets.nearestIndex(STOPS, 0.5f));
+        assertEquals(2, SnapTargets.nearestIndex(STOPS, 1f));
+        assertEquals(2, SnapTargets.nearestIndex(STOPS, 1.2f));
+    }
+
+    @Test
+    public void nearestIndexGoesUpWhenHalfway() {
+        assertEquals(1, SnapTargets.nearestIndex(STOPS, 0.25f));
+        assertEquals(2, SnapTargets.nearestIndex(STOPS, 0.75f));
+    }
+
+    @Test
+    public void singleStop() {
+        final float[] stops = {0.5f};
+        assertEquals(0, SnapTargets.ceilingIndex(stops, 0.8f));
+        assertEquals(0, SnapTargets.floorIndex(stops, 0.2f));
+        assertEquals(0, SnapTargets.nearestIndex(stops, 0f));
+    }
+
+    @Test
+    public void noStops() {
+        assertEquals(-1, SnapTargets.ceilingIndex(NO_STOPS, 0.5f));
+        assertEquals(-1, SnapTargets.floorIndex(NO_STOPS, 0.5f));
+        assertEquals(-1, SnapTargets.nearestIndex(NO_STOPS, 0.5f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releaseWithoutStops() {
+        SnapTargets.computeReleaseOffset(0.5f, NO_STOPS, 1f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void projectedReleaseWithoutStops() {
+        SnapTargets.computeProjectedReleaseOffset(0.5f, NO_STOPS, 1f, RATE);
+    }
+
+    @Test
+    public void releaseOffsetWithoutAnchor() {
+        assertEquals(1f, SnapTargets.computeReleaseOffset(0.3f, 1f, 1f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0.7f, 1f, -1f), 0);
+        assertEquals(1f, SnapTargets.computeReleaseOffset(0.5f, 1f, 0f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0.49f, 1f, 0f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0f, 1f, 0f), 0);
+        assertEquals(1f, SnapTargets.computeReleaseOffset(1f, 1f, 0f), 0);
+    }
+
+    @Test
+    public void releaseOffsetWithAnchor() {
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.2f, 0.5f, 1f), 0);
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.5f, 0.5f, 1f), 0);
+        assertEquals(1f, SnapTargets.computeReleaseOffset(0.6f, 0.5f, 1f), 0);
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.5f, 0.5f, -1f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0.4f, 0.5f, -1f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0.2f, 0.5f, 0f), 0);
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.25f, 0.5f, 0f), 0);
+        assertEquals(1f, SnapTargets.computeReleaseOffset(0.75f, 0.5f, 0f), 0);
+    }
+
+    @Test
+    public void releaseOffsetWithStops() {
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.2f, STOPS, 1f), 0);
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.5f, STOPS, 1f), 0);
+        assertEquals(1f, SnapTargets.computeReleaseOffset(0.6f, STOPS, 1f), 0);
+        assertEquals(1f, SnapTargets.computeReleaseOffset(1f, STOPS, 1f), 0);
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.6f, STOPS, -1f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0f, STOPS, -1f), 0);
+        assertEquals(0.5f, SnapTargets.computeReleaseOffset(0.6f, STOPS, 0f), 0);
+        assertEquals(0f, SnapTargets.computeReleaseOffset(0.1f, STOPS, 0f), 0);
+    }
+
+    @Test
+    public void projectOffset() {
+        // The velocity decays by 0.2% every millisecond, a fling travels 0.499 s worth of velocity
+        assertEquals(0.699f, SnapTargets.projectOffset(0.2f, 1f, RATE), 0.001f);
+        assertEquals(-0.299f, SnapTargets.projectOffset(0.2f, -1f, RATE), 0.001f);
+        assertEquals(0.2f, SnapTargets.projectOffset(0.2f, 0f, RATE), 0);
+    }
+
+    @Test
+    public void projectedReleaseWithoutVelocityGoesToTheNearestStop() {
+        assertEquals(0.5f, SnapTargets.computeProjectedReleaseOffset(0.3f, STOPS, 0f, RATE), 0);
+        assertEquals(0f, SnapTargets.computeProjectedReleaseOffset(0.2f, STOPS, 0f, RATE), 0);
+        assertEquals(1f, SnapTargets.computeProjectedReleaseOffset(1f, STOPS, 0f, RATE), 0);
+    }
+
+    @Test
+    public void projectedReleaseGoesAtLeastToTheNextStop() {
+        assertEquals(0.5f, SnapTargets.computeProjectedReleaseOffset(0.1f, STOPS, 0.01f, RATE), 0);
+        assertEquals(0.5f, SnapTargets.computeProjectedReleaseOffset(0.9f, STOPS, -0.01f, RATE), 0);
+    }
+
+    @Test
+    public void projectedReleaseSkipsStops() {
+        assertEquals(1f, SnapTargets.computeProjectedReleaseOffset(0.1f, STOPS, 2f, RATE), 0);
+        assertEquals(0f, SnapTargets.computeProjectedReleaseOffset(0.9f, STOPS, -2f, RATE), 0);
+    }
+
+    @Test
+    public void projectedReleaseAtTheEnds() {
+        assertEquals(0f, SnapTargets.computeProjectedReleaseOffset(0f, STOPS, -2f, RATE), 0);
+        assertEquals(1f, SnapTargets.computeProjectedReleaseOffset(1f, STOPS, 2f, RATE), 0);
+    }
+
+    @Test
+    public void projectedReleaseFromAStop() {
+        assertEquals(0.5f, SnapTargets.computeProjectedReleaseOffset(0.5f, STOPS, 0.01f, RATE), 0);
+        assertEquals(1f, SnapTargets.computeProjectedReleaseOffset(0.5f, STOPS, 1f, RATE), 0);
+    }
+}
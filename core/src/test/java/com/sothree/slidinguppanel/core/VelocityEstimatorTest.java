@@ -0,0 +1,141 @@
+package com.sothree.slidinguppanel.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VelocityEstimatorTest {
+
+    private static final float EPSILON = 0.01f;
+
+    @Test
+    public void noSamples() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        assertEquals(0, estimator.computeVelocity(), 0);
+        assertEquals(0, estimator.computeAcceleration(), 0);
+    }
+
+    @Test
+    public void singleSample() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        estimator.addSample(1000, 50);
+        assertEquals(1, estimator.getSampleCount());
+        assertEquals(0, estimator.computeVelocity(), 0);
+        assertEquals(0, estimator.computeAcceleration(), 0);
+    }
+
+    @Test
+    public void twoSamplesFitALine() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        estimator.addSample(1000, 0);
+        estimator.addSample(1010, 5);
+        assertEquals(500, estimator.computeVelocity(), EPSILON);
+        assertEquals(0, estimator.computeAcceleration(), 0);
+    }
+
+    @Test
+    public void constantVelocity() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        // 1200 px/s sampled every 8 ms
+        for (int i = 0; i < 10; i++) {
+            estimator.addSample(1000 + i * 8, 10 + 1.2f * i * 8);
+        }
+        assertEquals(1200, estimator.computeVelocity(), 0.1f);
+        assertEquals(0, estimator.computeAcceleration(), 1f);
+    }
+
+    @Test
+    public void constantAcceleration() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        // y = 100 + 500 t + 0.5 * 4000 t^2, sampled every 8 ms
+        final float v0 = 500;
+        final float a = 4000;
+        float t = 0;
+        for (int i = 0; i < 10; i++) {
+            t = i * 0.008f;
+            estimator.addSample(1000 + i * 8, 100 + v0 * t + 0.5f * a * t * t);
+        }
+        assertEquals(v0 + a * t, estimator.computeVelocity(), 0.5f);
+        assertEquals(a, estimator.computeAcceleration(), 5f);
+    }
+
+    @Test
+    public void samplesOlderThanTheHorizonAreIgnored() {
+        VelocityEstimator estimator = new VelocityEstimator(20, 100);
+        // Moving the other way long ago
+        estimator.addSample(0, 1000);
+        estimator.addSample(10, 0);
+        // Then at 100 px/s
+        estimator.addSample(500, 0);
+        estimator.addSample(510, 1);
+        estimator.addSample(520, 2);
+        assertEquals(100, estimator.computeVelocity(), EPSILON);
+    }
+
+    @Test
+    public void onlySampleWithinTheHorizon() {
+        VelocityEstimator estimator = new VelocityEstimator(20, 100);
+        estimator.addSample(0, 0);
+        estimator.addSample(500, 100);
+        assertEquals(2, estimator.getSampleCount());
+        assertEquals(0, estimator.computeVelocity(), 0);
+    }
+
+    @Test
+    public void closelySpacedColinearSamples() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        // Three samples 1 ms apart on a line: the quadratic fit is nearly degenerate
+        estimator.addSample(1000, 0);
+        estimator.addSample(1001, 2);
+        estimator.addSample(1002, 4);
+        assertEquals(2000, estimator.computeVelocity(), 0.5f);
+        assertEquals(0, estimator.computeAcceleration(), 1f);
+    }
+
+    @Test
+    public void sampleAtTheSameTimeReplacesTheNewest() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        estimator.addSample(1000, 0);
+        estimator.addSample(1010, 100);
+        estimator.addSample(1010, 10);
+        assertEquals(2, estimator.getSampleCount());
+        assertEquals(1000, estimator.computeVelocity(), EPSILON);
+    }
+
+    @Test
+    public void olderSampleStartsOver() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        estimator.addSample(1000, 0);
+        estimator.addSample(1010, 100);
+        estimator.addSample(500, 0);
+        assertEquals(1, estimator.getSampleCount());
+        assertEquals(0, estimator.computeVelocity(), 0);
+    }
+
+    @Test
+    public void ringBufferKeepsTheNewestSamples() {
+        VelocityEstimator estimator = new VelocityEstimator(3, 1000);
+        estimator.addSample(0, 1000);
+        estimator.addSample(10, 500);
+        estimator.addSample(20, 0);
+        estimator.addSample(30, 1);
+        estimator.addSample(40, 2);
+        assertEquals(3, estimator.getSampleCount());
+        assertEquals(100, estimator.computeVelocity(), EPSILON);
+    }
+
+    @Test
+    public void clear() {
+        VelocityEstimator estimator = new VelocityEstimator();
+        estimator.addSample(1000, 0);
+        estimator.addSample(1010, 100);
+        estimator.clear();
+        assertEquals(0, estimator.getSampleCount());
+        assertEquals(0, estimator.computeVelocity(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityBelowTwo() {
+        new VelocityEstimator(1, 100);
+    }
+}
@@ -0,0 +1,108 @@
+package com.sothree.slidinguppanel;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+
+import com.sothree.slidinguppanel.core.ItemHeightCache;
+
+/**
+ * Scrollable view helper computing the exact scroll position of ListView and RecyclerView when
+ * their rows have different heights. The heights of the visible rows are recorded by adapter
+ * position at each query, so rows that scrolled out of view are still accounted for.
+ *
+ * Rows that were never displayed are counted with the average height of the displayed ones. The
+ * height of a ListView row includes its divider, as the decorated height of a RecyclerView row
+ * includes its item decorations.
+ */
+public class ExactScrollableViewHelper extends ScrollableViewHelper {
+
+    private final ItemHeightCache mHeights = new ItemHeightCache();
+    private View mView;
+    private Object mAdapter;
+
+    public ExactScrollableViewHelper() {
+        registerScrollResolver(ListView.class, new ScrollResolver() {
+            @Override
+            public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+                return getListViewScrollPosition((ListView) scrollableView, isSlidingUp);
+            }
+        });
+        registerScrollResolver(RecyclerView.class, new ScrollResolver() {
+            @Override
+            public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+                return getRecyclerViewScrollPosition((RecyclerView) scrollableView, isSlidingUp);
+            }
+        });
+    }
+
+    private int getListViewScrollPosition(ListView lv, boolean isSlidingUp) {
+        ListAdapter adapter = lv.getAdapter();
+        if (lv.getChildCount() == 0 || adapter == null) return 0;
+        prepare(lv, adapter, adapter.getCount());
+        final int first = lv.getFirstVisiblePosition();
+        final int last = first + lv.getChildCount() - 1;
+        recordChildren(lv, first, null);
+        if (isSlidingUp) {
+            return (int) mHeights.getHeightAbove(first) - lv.getChildAt(0).getTop();
+        } else {
+            View lastChild = lv.getChildAt(lv.getChildCount() - 1);
+            return (int) mHeights.getHeightBelow(last) + lastChild.getBottom() - lv.getHeight();
+        }
+    }
+
+    private int getRecyclerViewScrollPosition(RecyclerView rv, boolean isSlidingUp) {
+        RecyclerView.LayoutManager lm = rv.getLayoutManager();
+        RecyclerView.Adapter<?> adapter = rv.getAdapter();
+        if (rv.getChildCount() == 0 || adapter == null || lm == null) return 0;
+        prepare(rv, adapter, adapter.getItemCount());
+        View firstChild = rv.getChildAt(0);
+        View lastChild = rv.getChildAt(rv.getChildCount() - 1);
+        final int first = rv.getChildLayoutPosition(firstChild);
+        final int last = rv.getChildLayoutPosition(lastChild);
+        recordChildren(rv, first, lm);
+        if (isSlidingUp) {
+            return (int) mHeights.getHeightAbove(first) - lm.getDecoratedTop(firstChild);
+        } else {
+            return (int) mHeights.getHeightBelow(last) + lm.getDecoratedBottom(lastChild) - rv.getHeight();
+        }
+    }
+
+    /**
+     * Clears the cached heights if the scrollable view, its adapter or its item count changed.
+     */
+    private void prepare(View view, Object adapter, int itemCount) {
+        if (view != mView || adapter != mAdapter || itemCount != mHeights.getItemCount()) {
+            mView = view;
+            mAdapter = adapter;
+            if (itemCount == mHeights.getItemCount()) {
+                // Another view or adapter with as many items, setItemCount would keep the heights
+                mHeights.clear();
+            }
+            mHeights.setItemCount(itemCount);
+        }
+    }
+
+    /**
+     * Records the heights of all the visible rows, since any of them may have been resized or
+     * rebound since the previous query.
+     */
+    private void recordChildren(ViewGroup parent, int first, RecyclerView.LayoutManager lm) {
+        final int count = parent.getChildCount();
+        for (int i = 0; i < count; i++) {
+            recordChild(parent, i, first + i, lm);
+        }
+    }
+
+    private void recordChild(ViewGroup parent, int index, int position, RecyclerView.LayoutManager lm) {
+        final View child = parent.getChildAt(index);
+        if (lm != null) {
+            mHeights.put(((RecyclerView) parent).getChildLayoutPosition(child), lm.getDecoratedMeasuredHeight(child));
+        } else {
+            // Each row is separated from the next by a divider, count it with the row
+            mHeights.put(position, child.getHeight() + ((ListView) parent).getDividerHeight());
+        }
+    }
+}
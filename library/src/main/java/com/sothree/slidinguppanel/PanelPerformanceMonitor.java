@@ -0,0 +1,138 @@
+package com.sothree.slidinguppanel;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.WindowManager;
+
+import com.sothree.slidinguppanel.core.FrameHistogram;
+
+/**
+ * Records the frame timing of the panel while it is dragged or settles. Set it on the layout with
+ * {@link SlidingUpPanelLayout#setPanelPerformanceMonitor(PanelPerformanceMonitor)}. Frame durations
+ * are taken from the {@link Choreographer} frame times and go into a fixed-size
+ * {@link FrameHistogram}, which is reported to the listener once the gesture settles.
+ *
+ * Recording does not allocate, so the monitor is cheap enough to stay enabled in production.
+ * It requires API 16, it does not record anything on older platforms.
+ */
+public class PanelPerformanceMonitor {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * Default refresh rate if the display does not report one
+     */
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    /**
+     * Listener receiving the frame timing of each gesture.
+     */
+    public interface Listener {
+        /**
+         * Called when a drag or a settle is over and the panel is at rest.
+         *
+         * @param panel  The sliding panel
+         * @param frames The frames rendered during the gesture. This instance is reused for
+         *               the next gesture, copy it with {@link FrameHistogram#set(FrameHistogram)}
+         *               to keep it.
+         */
+        void onGestureFrames(View panel, FrameHistogram frames);
+    }
+
+    private final Listener mListener;
+    private final FrameHistogram mFrames = new FrameHistogram();
+    private Object mFrameCallback;
+    private View mPanel;
+    private long mFrameIntervalNanos;
+    private long mLastFrameTimeNanos;
+    private boolean mRecording;
+
+    public PanelPerformanceMonitor(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener may not be null");
+        }
+        mListener = listener;
+    }
+
+    /**
+     * @return true if a gesture is being recorded
+     */
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    /**
+     * Starts recording the frames of a gesture, if not already recording.
+     *
+     * @param panel The sliding panel
+     */
+    void start(View panel) {
+        if (mRecording || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        mRecording = true;
+        mPanel = panel;
+        mFrames.reset();
+        mLastFrameTimeNanos = 0;
+        mFrameIntervalNanos = computeFrameIntervalNanos(panel.getContext());
+        postFrameCallback();
+    }
+
+    /**
+     * Stops recording and reports the gesture to the listener.
+     */
+    void stop() {
+        if (!mRecording) {
+            return;
+        }
+        cancel();
+        if (mFrames.getFrameCount() > 0) {
+            mListener.onGestureFrames(mPanel, mFrames);
+        }
+        mPanel = null;
+    }
+
+    /**
+     * Stops recording without reporting the gesture.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    void cancel() {
+        if (!mRecording) {
+            return;
+        }
+        mRecording = false;
+        Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    if (!mRecording) {
+                        return;
+                    }
+                    if (mLastFrameTimeNanos != 0) {
+                        mFrames.record(frameTimeNanos - mLastFrameTimeNanos, mFrameIntervalNanos);
+                    }
+                    mLastFrameTimeNanos = frameTimeNanos;
+                    Choreographer.getInstance().postFrameCallback(this);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    private static long computeFrameIntervalNanos(Context context) {
+        final WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        float refreshRate = wm != null ? wm.getDefaultDisplay().getRefreshRate() : DEFAULT_REFRESH_RATE;
+        if (refreshRate < 1f) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        return (long) (NANOS_PER_SECOND / refreshRate);
+    }
+}
@@ -1,39 +1,61 @@
 package com.sothree.slidinguppanel;
 
+import android.support.v4.view.ScrollingView;
+import android.support.v4.widget.NestedScrollView;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ListView;
 import android.widget.ScrollView;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Helper class for determining the current scroll positions for scrollable views. Currently works
- * for ListView, ScrollView and RecyclerView, but the library users can override it to add support
- * for other views.
+ * Helper class for determining the current scroll positions for scrollable views. Works out of
+ * the box for ScrollView, NestedScrollView, ListView and RecyclerView. Other views implementing
+ * ScrollingView are supported through their computed scroll offsets, and any other view through
+ * canScrollVertically.
+ *
+ * Library users can add support for other views by registering a {@link ScrollResolver} for
+ * their class, or override getScrollableViewScrollPosition altogether.
  */
 public class ScrollableViewHelper {
+
     /**
-     * Returns the current scroll position of the scrollable view. If this method returns zero or
-     * less, it means at the scrollable view is in a position such as the panel should handle
-     * scrolling. If the method returns anything above zero, then the panel will let the scrollable
-     * view handle the scrolling
-     *
-     * @param scrollableView the scrollable view
-     * @param isSlidingUp whether or not the panel is sliding up or down
-     * @return the scroll position
+     * Computes the scroll position of a given type of scrollable view.
      */
-    public int getScrollableViewScrollPosition(View scrollableView, boolean isSlidingUp) {
-        if (scrollableView == null) return 0;
-        if (scrollableView instanceof ScrollView) {
+    public interface ScrollResolver {
+        /**
+         * Returns the current scroll position of the scrollable view. See
+         * {@link ScrollableViewHelper#getScrollableViewScrollPosition(View, boolean)}.
+         *
+         * @param scrollableView the scrollable view
+         * @param isSlidingUp whether or not the panel is sliding up or down
+         * @return the scroll position
+         */
+        int getScrollPosition(View scrollableView, boolean isSlidingUp);
+    }
+
+    // ScrollView and NestedScrollView both scroll their single child
+    private static final ScrollResolver SCROLL_VIEW_RESOLVER = new ScrollResolver() {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
             if (isSlidingUp) {
                 return scrollableView.getScrollY();
             } else {
-                ScrollView sv = ((ScrollView) scrollableView);
+                ViewGroup sv = ((ViewGroup) scrollableView);
                 View child = sv.getChildAt(0);
                 return (child.getBottom() - (sv.getHeight() + sv.getScrollY()));
             }
-        } else if (scrollableView instanceof ListView && ((ListView) scrollableView).getChildCount() > 0) {
+        }
+    };
+
+    private static final ScrollResolver LIST_VIEW_RESOLVER = new ScrollResolver() {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
             ListView lv = ((ListView) scrollableView);
-            if (lv.getAdapter() == null) return 0;
+            if (lv.getChildCount() == 0 || lv.getAdapter() == null) return 0;
             if (isSlidingUp) {
                 View firstChild = lv.getChildAt(0);
                 // Approximate the scroll position based on the top child and the first visible item
@@ -43,10 +65,15 @@ public class ScrollableViewHelper {
                 // Approximate the scroll position based on the bottom child and the last visible item
                 return (lv.getAdapter().getCount() - lv.getLastVisiblePosition() - 1) * lastChild.getHeight() + lastChild.getBottom() - lv.getBottom();
             }
-        } else if (scrollableView instanceof RecyclerView && ((RecyclerView) scrollableView).getChildCount() > 0) {
+        }
+    };
+
+    private static final ScrollResolver RECYCLER_VIEW_RESOLVER = new ScrollResolver() {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
             RecyclerView rv = ((RecyclerView) scrollableView);
             RecyclerView.LayoutManager lm = rv.getLayoutManager();
-            if (rv.getAdapter() == null) return 0;
+            if (rv.getChildCount() == 0 || rv.getAdapter() == null) return 0;
             if (isSlidingUp) {
                 View firstChild = rv.getChildAt(0);
                 // Approximate the scroll position based on the top child and the first visible item
@@ -56,8 +83,98 @@ public class ScrollableViewHelper {
                 // Approximate the scroll position based on the bottom child and the last visible item
                 return (rv.getAdapter().getItemCount() - 1) * lm.getDecoratedMeasuredHeight(lastChild) + lm.getDecoratedBottom(lastChild) - rv.getBottom();
             }
-        } else {
-            return 0;
         }
+    };
+
+    /**
+     * Fallback for any other view: uses the computed scroll offsets of views implementing
+     * ScrollingView, and otherwise only tells whether the view can scroll further.
+     */
+    private static final ScrollResolver GENERIC_RESOLVER = new ScrollResolver() {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+            if (scrollableView instanceof ScrollingView) {
+                ScrollingView sv = (ScrollingView) scrollableView;
+                if (isSlidingUp) {
+                    return sv.computeVerticalScrollOffset();
+                } else {
+                    return sv.computeVerticalScrollRange() - sv.computeVerticalScrollOffset() - sv.computeVerticalScrollExtent();
+                }
+            }
+            return scrollableView.canScrollVertically(isSlidingUp ? -1 : 1) ? 1 : 0;
+        }
+    };
+
+    private final Map<Class<?>, ScrollResolver> mResolvers = new HashMap<>();
+    private View mResolvedView;
+    private ScrollResolver mResolvedResolver;
+
+    public ScrollableViewHelper() {
+        registerScrollResolver(ScrollView.class, SCROLL_VIEW_RESOLVER);
+        registerScrollResolver(NestedScrollView.class, SCROLL_VIEW_RESOLVER);
+        registerScrollResolver(ListView.class, LIST_VIEW_RESOLVER);
+        registerScrollResolver(RecyclerView.class, RECYCLER_VIEW_RESOLVER);
+    }
+
+    /**
+     * Registers the resolver used for the given class of scrollable views and its subclasses,
+     * replacing any previous one. The resolver of the closest registered superclass wins.
+     *
+     * @param viewClass the class of scrollable views
+     * @param resolver  the resolver computing their scroll position
+     */
+    public void registerScrollResolver(Class<? extends View> viewClass, ScrollResolver resolver) {
+        if (viewClass == null || resolver == null) {
+            throw new IllegalArgumentException("View class and resolver may not be null");
+        }
+        mResolvers.put(viewClass, resolver);
+        mResolvedView = null;
+        mResolvedResolver = null;
+    }
+
+    /**
+     * Finds the resolver for a scrollable view, walking up its class hierarchy until a registered
+     * class is found.
+     *
+     * @param scrollableView the scrollable view
+     * @return the resolver to use, never null
+     */
+    public ScrollResolver findScrollResolver(View scrollableView) {
+        for (Class<?> c = scrollableView.getClass(); c != null && c != View.class; c = c.getSuperclass()) {
+            ScrollResolver resolver = mResolvers.get(c);
+            if (resolver != null) {
+                return resolver;
+            }
+        }
+        return GENERIC_RESOLVER;
+    }
+
+    /**
+     * Called by the layout when its scrollable view is set, to pick its resolver once instead of
+     * on every touch event.
+     *
+     * @param scrollableView the new scrollable view, or null
+     */
+    void onScrollableViewChanged(View scrollableView) {
+        mResolvedView = scrollableView;
+        mResolvedResolver = scrollableView != null ? findScrollResolver(scrollableView) : null;
+    }
+
+    /**
+     * Returns the current scroll position of the scrollable view. If this method returns zero or
+     * less, it means at the scrollable view is in a position such as the panel should handle
+     * scrolling. If the method returns anything above zero, then the panel will let the scrollable
+     * view handle the scrolling
+     *
+     * @param scrollableView the scrollable view
+     * @param isSlidingUp whether or not the panel is sliding up or down
+     * @return the scroll position
+     */
+    public int getScrollableViewScrollPosition(View scrollableView, boolean isSlidingUp) {
+        if (scrollableView == null) return 0;
+        if (scrollableView != mResolvedView || mResolvedResolver == null) {
+            onScrollableViewChanged(scrollableView);
+        }
+        return mResolvedResolver.getScrollPosition(scrollableView, isSlidingUp);
     }
 }
@@ -0,0 +1,65 @@
+package com.sothree.slidinguppanel;
+
+import android.content.Context;
+import android.support.v4.widget.ScrollerCompat;
+import android.view.animation.Interpolator;
+
+/**
+ * Settles along an interpolated curve with a {@link ScrollerCompat}. This is the classic
+ * ViewDragHelper behaviour: the duration is derived from the distance and the release velocity.
+ */
+public class ScrollerSettleEngine extends SettleEngine {
+
+    private final ScrollerCompat mScroller;
+
+    public ScrollerSettleEngine(Context context, Interpolator interpolator) {
+        mScroller = ScrollerCompat.create(context, interpolator);
+    }
+
+    @Override
+    public void startSettle(int startX, int startY, int dx, int dy, int xvel, int yvel, int duration) {
+        mScroller.startScroll(startX, startY, dx, dy, duration);
+    }
+
+    @Override
+    public void startFling(int startX, int startY, int xvel, int yvel, int minX, int maxX, int minY, int maxY) {
+        mScroller.fling(startX, startY, xvel, yvel, minX, maxX, minY, maxY);
+    }
+
+    @Override
+    public boolean computeOffset(long frameTimeNanos) {
+        // The scroller keeps its own animation clock, which is aligned with the frame time
+        // when called from a frame callback
+        return mScroller.computeScrollOffset();
+    }
+
+    @Override
+    public int getCurrX() {
+        return mScroller.getCurrX();
+    }
+
+    @Override
+    public int getCurrY() {
+        return mScroller.getCurrY();
+    }
+
+    @Override
+    public int getFinalX() {
+        return mScroller.getFinalX();
+    }
+
+    @Override
+    public int getFinalY() {
+        return mScroller.getFinalY();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mScroller.isFinished();
+    }
+
+    @Override
+    public void abort() {
+        mScroller.abortAnimation();
+    }
+}
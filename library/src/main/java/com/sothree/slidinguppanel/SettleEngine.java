@@ -0,0 +1,81 @@
+package com.sothree.slidinguppanel;
+
+/**
+ * Computes the motion of a view that settles into place after being released or after a
+ * programmatic slide. {@link ViewDragHelper} advances the engine once per frame and moves the
+ * captured view to the position it reports. Implementations decide how the view gets there, see
+ * {@link ScrollerSettleEngine} and {@link SpringSettleEngine}.
+ *
+ * <p>Times are expressed in nanoseconds in the {@link System#nanoTime()} time base, which is the
+ * time base of {@link android.view.Choreographer} frame times.</p>
+ */
+public abstract class SettleEngine {
+
+    /**
+     * Starts settling from the given position towards the position at the given distance.
+     *
+     * @param startX   Starting horizontal position
+     * @param startY   Starting vertical position
+     * @param dx       Horizontal distance to travel
+     * @param dy       Vertical distance to travel
+     * @param xvel     Initial horizontal velocity in pixels per second
+     * @param yvel     Initial vertical velocity in pixels per second
+     * @param duration Suggested duration of the motion in milliseconds. Engines driven by physics
+     *                 may ignore it.
+     */
+    public abstract void startSettle(int startX, int startY, int dx, int dy, int xvel, int yvel, int duration);
+
+    /**
+     * Starts a free fling from the given position, bounded by the given limits.
+     *
+     * @param startX Starting horizontal position
+     * @param startY Starting vertical position
+     * @param xvel   Initial horizontal velocity in pixels per second
+     * @param yvel   Initial vertical velocity in pixels per second
+     * @param minX   Minimum horizontal position
+     * @param maxX   Maximum horizontal position
+     * @param minY   Minimum vertical position
+     * @param maxY   Maximum vertical position
+     */
+    public abstract void startFling(int startX, int startY, int xvel, int yvel,
+                                    int minX, int maxX, int minY, int maxY);
+
+    /**
+     * Computes the position for the given frame time. Like {@link android.widget.Scroller}, this
+     * returns false only if the motion was already finished when called, so the frame reaching
+     * the final position still returns true.
+     *
+     * @param frameTimeNanos Time of the frame being rendered
+     * @return true if the motion was still running
+     */
+    public abstract boolean computeOffset(long frameTimeNanos);
+
+    public abstract int getCurrX();
+
+    public abstract int getCurrY();
+
+    public abstract int getFinalX();
+
+    public abstract int getFinalY();
+
+    /**
+     * @return true if the motion reached its final position or was aborted
+     */
+    public abstract boolean isFinished();
+
+    /**
+     * Stops the motion and moves the current position to the final position.
+     */
+    public abstract void abort();
+
+    /**
+     * Whether the motion may go past the final position before coming back to it. The view is
+     * then only at rest once {@link #computeOffset(long)} returns false, not as soon as it first
+     * reaches the final position.
+     *
+     * @return true if the motion can overshoot the final position
+     */
+    public boolean canOvershoot() {
+        return false;
+    }
+}
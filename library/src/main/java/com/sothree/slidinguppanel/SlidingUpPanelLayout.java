@@ -9,8 +9,12 @@ import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.NestedScrollingParent2;
+import android.support.v4.view.NestedScrollingParentHelper;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -18,16 +22,20 @@ import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewStub;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
 
+import com.sothree.slidinguppanel.core.PanelGeometry;
+import com.sothree.slidinguppanel.core.SnapTargets;
 import com.sothree.slidinguppanel.library.R;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
-public class SlidingUpPanelLayout extends ViewGroup {
+public class SlidingUpPanelLayout extends ViewGroup implements NestedScrollingParent2 {
 
     private static final String TAG = SlidingUpPanelLayout.class.getSimpleName();
 
@@ -69,11 +77,57 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     private static final boolean DEFAULT_CLIP_PANEL_FLAG = true;
     /**
-     * Default attributes for layout
+     * Default is set to false to only trust the background of the panel for opacity
      */
-    private static final int[] DEFAULT_ATTRS = new int[]{
-            android.R.attr.gravity
-    };
+    private static final boolean DEFAULT_PANEL_OPAQUE_FLAG = false;
+    /**
+     * Default is set to false to inflate the panel content stub on the main thread when needed
+     */
+    private static final boolean DEFAULT_PANEL_CONTENT_ASYNC_FLAG = false;
+    /**
+     * Default is set to false to keep resizing the main view on every drag frame like before
+     */
+    private static final boolean DEFAULT_DEFER_MAIN_VIEW_RESIZE_FLAG = false;
+    /**
+     * Default is set to false to settle at the next stop in the direction of a fling
+     */
+    private static final boolean DEFAULT_PROJECT_FLING_FLAG = false;
+    /**
+     * Default is set to false to move the panel on every touch event
+     */
+    private static final boolean DEFAULT_COALESCE_DRAG_FLAG = false;
+    /**
+     * Default is set to false to draw the panel at the last reported touch position
+     */
+    private static final boolean DEFAULT_PREDICT_DRAG_FLAG = false;
+    /**
+     * Default is set to false to tell listeners about every state change, DRAGGING included
+     */
+    private static final boolean DEFAULT_COALESCE_STATE_CHANGES_FLAG = false;
+    /**
+     * Settle engine selectable through the umanoSettleEngine attribute
+     */
+    private static final int SETTLE_ENGINE_SCROLLER = 0;
+    private static final int SETTLE_ENGINE_SPRING = 1;
+    /**
+     * Resize policy putting the panel back at the position of its state whenever the height of
+     * the layout changes
+     */
+    public static final int RESIZE_POLICY_RESET = 0;
+    /**
+     * Resize policy keeping the slide offset of the panel, as a fraction of its range, across
+     * changes of the layout height
+     */
+    public static final int RESIZE_POLICY_FRACTION = 1;
+    /**
+     * Resize policy keeping the distance in pixels between the panel and its collapsed position
+     * across changes of the layout height
+     */
+    public static final int RESIZE_POLICY_PIXELS = 2;
+    /**
+     * Default is set to reset because that is how it was written
+     */
+    private static final int DEFAULT_RESIZE_POLICY = RESIZE_POLICY_RESET;
     /**
      * Tag for the sliding state stored inside the bundle
      */
@@ -100,9 +154,9 @@ public class SlidingUpPanelLayout extends ViewGroup {
     private final Paint mCoveredFadePaint = new Paint();
 
     /**
-     * Drawable used to draw the shadow between panes.
+     * Drawable used to draw the shadow between panes, resolved when first drawn.
      */
-    private final Drawable mShadowDrawable;
+    private Drawable mShadowDrawable;
 
     /**
      * The size of the overhang in pixels.
@@ -134,6 +188,23 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     private boolean mClipPanel = DEFAULT_CLIP_PANEL_FLAG;
 
+    /**
+     * The panel fully hides what is under it, whatever its background
+     */
+    private boolean mPanelOpaque = DEFAULT_PANEL_OPAQUE_FLAG;
+
+    /**
+     * The main view keeps its size while the panel moves below the collapsed position and is
+     * only resized once the panel settles
+     */
+    private boolean mDeferMainViewResize = DEFAULT_DEFER_MAIN_VIEW_RESIZE_FLAG;
+
+    /**
+     * True if the main view has been sized for a drag below the collapsed position and still
+     * needs its final size
+     */
+    private boolean mMainViewResizePending;
+
     /**
      * If provided, the panel can be dragged by only this view. Otherwise, the entire panel can be
      * used for dragging.
@@ -153,6 +224,23 @@ public class SlidingUpPanelLayout extends ViewGroup {
     private int mScrollableViewResId;
     private ScrollableViewHelper mScrollableViewHelper = new ScrollableViewHelper();
 
+    /**
+     * If provided, the stub inside the panel holding its content until the panel is first opened.
+     */
+    private int mPanelContentStubResId = -1;
+    private ViewStub mPanelContentStub;
+
+    /**
+     * The panel content stub is inflated in the background after the first layout
+     */
+    private boolean mPanelContentAsync = DEFAULT_PANEL_CONTENT_ASYNC_FLAG;
+
+    /**
+     * The stub whose layout is being inflated in the background, if any
+     */
+    private ViewStub mAsyncPanelContentStub;
+    private PanelContentListener mPanelContentListener;
+
     /**
      * The child view that can slide, if any.
      */
@@ -187,16 +275,77 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     private float mSlideOffset;
 
+    /**
+     * Exact slide offset restored from a saved state, applied by the next first layout
+     */
+    private float mRestoredSlideOffset = Float.NaN;
+
+    /**
+     * How the slide offset is carried across changes of the layout height
+     */
+    private int mResizePolicy = DEFAULT_RESIZE_POLICY;
+
+    /**
+     * Slide range the children were last laid out with
+     */
+    private int mLaidOutSlideRange = -1;
+
+    /**
+     * Slide offset the panel is settling to
+     */
+    private float mSettleTargetOffset;
+
+    /**
+     * Slide offset to settle to once the next layout measured the panel shown again from the
+     * hidden state
+     */
+    private float mPendingSlideOffset = Float.NaN;
+
     /**
      * How far in pixels the slideable panel may move.
      */
     private int mSlideRange;
 
+    /**
+     * Measured height of the panel and panel height mSlideRange was last computed from
+     */
+    private int mSlideRangeMeasuredHeight = -1;
+    private int mSlideRangePanelHeight = -1;
+
+    /**
+     * Children measured by the last measure pass and the specs they were given, so that children
+     * whose specs did not change and that did not request a layout are not measured again.
+     */
+    private final View[] mMeasuredChildren = new View[2];
+    private final int[] mChildWidthSpecs = new int[2];
+    private final int[] mChildHeightSpecs = new int[2];
+
     /**
      * An anchor point where the panel can stop during sliding
      */
     private float mAnchorPoint = 1.f;
 
+    /**
+     * Intermediate points where the panel can stop during sliding, sorted ascending. The anchor
+     * point is the lowest one.
+     */
+    private float[] mSnapPoints = new float[0];
+
+    /**
+     * All the offsets where the panel can stop: collapsed, the snap points and expanded
+     */
+    private float[] mStops = {0.f, 1.f};
+
+    /**
+     * True if a fling settles at the stop nearest to where it would come to rest
+     */
+    private boolean mProjectFling = DEFAULT_PROJECT_FLING_FLAG;
+
+    /**
+     * Index of the snap point the panel rests at, -1 if it does not rest at one
+     */
+    private int mSnapPointIndex = -1;
+
     /**
      * A panel view is locked into internal scrolling or another condition that
      * is preventing a drag.
@@ -214,10 +363,48 @@ public class SlidingUpPanelLayout extends ViewGroup {
     private float mInitialMotionY;
     private boolean mIsScrollableViewHandlingTouch = false;
 
+    /**
+     * The gesture started on a scrollable view supporting nested scrolling, within the drag view,
+     * so the scrollable view drives the panel through the nested scrolling callbacks instead of
+     * rewritten touch events.
+     */
+    private boolean mIsNestedScrollTouch;
+
+    /**
+     * The panel is being dragged by nested scrolling
+     */
+    private boolean mIsNestedDragging;
+
+    private final NestedScrollingParentHelper mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+
     private final List<PanelSlideListener> mPanelSlideListeners = new CopyOnWriteArrayList<>();
+    private PanelPerformanceMonitor mPerformanceMonitor;
     private View.OnClickListener mFadeOnClickListener;
 
-    private final ViewDragHelper mDragHelper;
+    /**
+     * Created on first use, see {@link #getDragHelper()}
+     */
+    private ViewDragHelper mDragHelper;
+
+    /**
+     * Drag helper settings kept until it is created
+     */
+    private int mScrollInterpolatorResId = -1;
+    private boolean mCoalesceDrag = DEFAULT_COALESCE_DRAG_FLAG;
+    private boolean mPredictDrag = DEFAULT_PREDICT_DRAG_FLAG;
+    private SettleEngine mSettleEngine;
+
+    /**
+     * Listeners are only told about settled states, once per frame
+     */
+    private boolean mCoalesceStateChanges = DEFAULT_COALESCE_STATE_CHANGES_FLAG;
+
+    /**
+     * Last states reported to coalesced listeners and to accessibility services
+     */
+    private PanelState mDispatchedPanelState;
+    private PanelState mAnnouncedPanelState;
+    private boolean mSettledStateDispatchPending;
 
     /**
      * Stores whether or not the pane was expanded the last time it was slideable.
@@ -228,6 +415,15 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
     private final Rect mTmpRect = new Rect();
 
+    /**
+     * Offsets of the drag and scrollable views relative to the child of this layout that contains
+     * them. Resolved on every ACTION_DOWN (and after layouts) and only valid for that gesture, so
+     * that hit testing on the touch dispatch path works in parent coordinates without allocating.
+     */
+    private final HitTarget mDragViewHitTarget = new HitTarget();
+    private final HitTarget mScrollableViewHitTarget = new HitTarget();
+    private final int[] mTmpLocation = new int[2];
+
     /**
      * Listener for monitoring events about sliding panes.
      */
@@ -248,11 +444,50 @@ public class SlidingUpPanelLayout extends ViewGroup {
         public void onPanelStateChanged(View panel, PanelState previousState, PanelState newState);
     }
 
+    /**
+     * Listener for the snap point the panel rests at. Needed with several snap points, since the
+     * panel stays in the {@link PanelState#ANCHORED} state when going from one to another.
+     */
+    public interface PanelSnapPointListener extends PanelSlideListener {
+        /**
+         * Called when the panel comes to rest at a different snap point, or leaves them for the
+         * collapsed, expanded or hidden state.
+         *
+         * @param panel         The sliding panel
+         * @param previousIndex Index in {@link #getSnapPoints()} of the previous snap point, or -1
+         * @param newIndex      Index in {@link #getSnapPoints()} of the new snap point, or -1
+         */
+        public void onPanelSnapPointChanged(View panel, int previousIndex, int newIndex);
+    }
+
+    /**
+     * Listener for the inflation of the panel content stub.
+     */
+    public interface PanelContentListener {
+        /**
+         * Called when the inflation of the panel content starts in the background.
+         *
+         * @param panel The sliding panel
+         */
+        public void onPanelContentInflationStarted(View panel);
+
+        /**
+         * Called once the panel content replaced its stub.
+         *
+         * @param panel          The sliding panel
+         * @param content        The inflated content
+         * @param fromBackground false if the content was inflated on the main thread, either
+         *                       because background inflation is off or because the panel was
+         *                       opened before the background inflation finished
+         */
+        public void onPanelContentInflated(View panel, View content, boolean fromBackground);
+    }
+
     /**
      * No-op stubs for {@link PanelSlideListener}. If you only want to implement a subset
      * of the listener methods you can extend this instead of implement the full interface.
      */
-    public static class SimplePanelSlideListener implements PanelSlideListener {
+    public static class SimplePanelSlideListener implements PanelSnapPointListener {
         @Override
         public void onPanelSlide(View panel, float slideOffset) {
         }
@@ -260,10 +495,14 @@ public class SlidingUpPanelLayout extends ViewGroup {
         @Override
         public void onPanelStateChanged(View panel, PanelState previousState, PanelState newState) {
         }
+
+        @Override
+        public void onPanelSnapPointChanged(View panel, int previousIndex, int newIndex) {
+        }
     }
 
     public SlidingUpPanelLayout(Context context) {
-        this(context, null);
+        this(context, (AttributeSet) null);
     }
 
     public SlidingUpPanelLayout(Context context, AttributeSet attrs) {
@@ -274,77 +513,111 @@ public class SlidingUpPanelLayout extends ViewGroup {
         super(context, attrs, defStyle);
 
         if (isInEditMode()) {
-            mShadowDrawable = null;
-            mDragHelper = null;
             return;
         }
 
-        Interpolator scrollerInterpolator = null;
-        if (attrs != null) {
-            TypedArray defAttrs = context.obtainStyledAttributes(attrs, DEFAULT_ATTRS);
-
-            if (defAttrs != null) {
-                int gravity = defAttrs.getInt(0, Gravity.NO_GRAVITY);
-                setGravity(gravity);
-                defAttrs.recycle();
-            }
+        applyConfig(PanelConfig.obtain(context, attrs, defStyle));
+    }
 
+    /**
+     * Creates a layout from a configuration parsed once and shared with other layouts, to avoid
+     * parsing the same attributes for every instance.
+     *
+     * @param context The context the layout is running in
+     * @param config  The parsed panel configuration
+     */
+    public SlidingUpPanelLayout(Context context, PanelConfig config) {
+        super(context);
+        if (config == null) {
+            throw new IllegalArgumentException("Panel config may not be null");
+        }
+        applyConfig(config);
+    }
 
-            TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.SlidingUpPanelLayout);
+    private void applyConfig(PanelConfig config) {
+        setGravity(config.gravity);
 
-            if (ta != null) {
-                mPanelHeight = ta.getDimensionPixelSize(R.styleable.SlidingUpPanelLayout_umanoPanelHeight, -1);
-                mShadowHeight = ta.getDimensionPixelSize(R.styleable.SlidingUpPanelLayout_umanoShadowHeight, -1);
-                mParallaxOffset = ta.getDimensionPixelSize(R.styleable.SlidingUpPanelLayout_umanoParallaxOffset, -1);
+        mPanelHeight = config.panelHeight;
+        mShadowHeight = config.shadowHeight;
+        mParallaxOffset = config.parallaxOffset;
 
-                mMinFlingVelocity = ta.getInt(R.styleable.SlidingUpPanelLayout_umanoFlingVelocity, DEFAULT_MIN_FLING_VELOCITY);
-                mCoveredFadeColor = ta.getColor(R.styleable.SlidingUpPanelLayout_umanoFadeColor, DEFAULT_FADE_COLOR);
+        mMinFlingVelocity = config.minFlingVelocity;
+        mCoveredFadeColor = config.fadeColor;
 
-                mDragViewResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoDragView, -1);
-                mScrollableViewResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoScrollableView, -1);
+        mDragViewResId = config.dragViewResId;
+        mScrollableViewResId = config.scrollableViewResId;
+        mPanelContentStubResId = config.panelContentStubResId;
+        mPanelContentAsync = config.panelContentAsync;
 
-                mOverlayContent = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoOverlay, DEFAULT_OVERLAY_FLAG);
-                mClipPanel = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoClipPanel, DEFAULT_CLIP_PANEL_FLAG);
+        mOverlayContent = config.overlay;
+        mClipPanel = config.clipPanel;
+        mPanelOpaque = config.panelOpaque;
+        mDeferMainViewResize = config.deferMainViewResize;
 
-                mAnchorPoint = ta.getFloat(R.styleable.SlidingUpPanelLayout_umanoAnchorPoint, DEFAULT_ANCHOR_POINT);
+        mAnchorPoint = config.anchorPoint;
+        mProjectFling = config.projectFling;
+        mCoalesceDrag = config.coalesceDrag;
+        mPredictDrag = config.predictDrag;
 
-                mSlideState = PanelState.values()[ta.getInt(R.styleable.SlidingUpPanelLayout_umanoInitialState, DEFAULT_SLIDE_STATE.ordinal())];
+        resetPanelState(config.initialState);
+        mCoalesceStateChanges = config.coalesceStateChanges;
 
-                int interpolatorResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoScrollInterpolator, -1);
-                if (interpolatorResId != -1) {
-                    scrollerInterpolator = AnimationUtils.loadInterpolator(context, interpolatorResId);
-                }
-                ta.recycle();
-            }
+        mScrollInterpolatorResId = config.scrollInterpolatorResId;
+        mResizePolicy = config.resizePolicy;
+        if (config.settleEngine == SETTLE_ENGINE_SPRING) {
+            mSettleEngine = new SpringSettleEngine();
         }
 
-        final float density = context.getResources().getDisplayMetrics().density;
-        if (mPanelHeight == -1) {
-            mPanelHeight = (int) (DEFAULT_PANEL_HEIGHT * density + 0.5f);
+        if (config.snapPoints != null) {
+            applySnapPoints(config.snapPoints);
         }
-        if (mShadowHeight == -1) {
-            mShadowHeight = (int) (DEFAULT_SHADOW_HEIGHT * density + 0.5f);
+        if (mSlideState == PanelState.ANCHORED && mSnapPoints.length > 0) {
+            mSnapPointIndex = 0;
         }
-        if (mParallaxOffset == -1) {
-            mParallaxOffset = (int) (DEFAULT_PARALLAX_OFFSET * density);
+
+        setWillNotDraw(false);
+
+        mIsTouchEnabled = true;
+    }
+
+    /**
+     * Creates the drag helper the first time the panel is touched or moved, so that panels that
+     * are never dragged do not pay for it.
+     */
+    private ViewDragHelper getDragHelper() {
+        if (mDragHelper == null) {
+            Interpolator scrollerInterpolator = null;
+            if (mScrollInterpolatorResId != -1) {
+                scrollerInterpolator = AnimationUtils.loadInterpolator(getContext(), mScrollInterpolatorResId);
+            }
+            final float density = getResources().getDisplayMetrics().density;
+            mDragHelper = ViewDragHelper.create(this, 0.5f, scrollerInterpolator, new DragHelperCallback());
+            mDragHelper.setMinVelocity(mMinFlingVelocity * density);
+            mDragHelper.setSettleOnFrameCallbacks(true);
+            // The panel only ever moves vertically, following a single finger
+            mDragHelper.setVerticalSinglePointerMode(true);
+            mDragHelper.setVelocityEstimatorEnabled(true);
+            mDragHelper.setCoalesceDragToFrames(mCoalesceDrag);
+            mDragHelper.setDragPredictionEnabled(mPredictDrag);
+            if (mSettleEngine != null) {
+                mDragHelper.setSettleEngine(mSettleEngine);
+            }
         }
-        // If the shadow height is zero, don't show the shadow
-        if (mShadowHeight > 0) {
+        return mDragHelper;
+    }
+
+    /**
+     * Resolves the shadow drawable the first time the shadow is drawn.
+     */
+    private Drawable getShadowDrawable() {
+        if (mShadowDrawable == null && mShadowHeight > 0) {
             if (mIsSlidingUp) {
                 mShadowDrawable = getResources().getDrawable(R.drawable.above_shadow);
             } else {
                 mShadowDrawable = getResources().getDrawable(R.drawable.below_shadow);
             }
-        } else {
-            mShadowDrawable = null;
         }
-
-        setWillNotDraw(false);
-
-        mDragHelper = ViewDragHelper.create(this, 0.5f, scrollerInterpolator, new DragHelperCallback());
-        mDragHelper.setMinVelocity(mMinFlingVelocity * density);
-
-        mIsTouchEnabled = true;
+        return mShadowDrawable;
     }
 
     /**
@@ -353,11 +626,171 @@ public class SlidingUpPanelLayout extends ViewGroup {
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
+        if (mPanelContentStubResId != -1) {
+            setPanelContentStub(findViewById(mPanelContentStubResId));
+        }
+        resolveChildViews();
+        inflatePanelContentFor(mSlideState);
+    }
+
+    /**
+     * Finds the drag and scrollable views set by resource ID. Called again once the panel content
+     * is inflated, as they may be part of it.
+     */
+    private void resolveChildViews() {
         if (mDragViewResId != -1) {
-            setDragView(findViewById(mDragViewResId));
+            View dragView = findViewById(mDragViewResId);
+            if (dragView != null || mPanelContentStub == null) {
+                setDragView(dragView);
+            }
         }
         if (mScrollableViewResId != -1) {
-            setScrollableView(findViewById(mScrollableViewResId));
+            View scrollableView = findViewById(mScrollableViewResId);
+            if (scrollableView != null || mPanelContentStub == null) {
+                setScrollableView(scrollableView);
+            }
+        }
+    }
+
+    /**
+     * Set the stub holding the content of the panel. The panel is measured with only its other
+     * children (typically the header) until it is first touched or opened, when the stub gets
+     * inflated. Views set by resource ID through {@link #setDragView(int)} or the umanoDragView
+     * and umanoScrollableView attributes may be part of the stub layout.
+     *
+     * @param stub The stub of the panel content, or null to remove it
+     */
+    public void setPanelContentStub(View stub) {
+        if (stub != null && !(stub instanceof ViewStub)) {
+            throw new IllegalArgumentException("Panel content stub must be a ViewStub");
+        }
+        mPanelContentStub = (ViewStub) stub;
+        mAsyncPanelContentStub = null;
+        if (!mFirstLayout) {
+            post(mStartAsyncPanelContentInflation);
+        }
+    }
+
+    /**
+     * Sets whether the panel content stub is inflated in the background once the panel is first
+     * laid out, so that it is ready by the time the panel is opened. If the panel is opened
+     * before that, the content is inflated on the main thread right away instead.
+     *
+     * @param async
+     */
+    public void setPanelContentAsync(boolean async) {
+        mPanelContentAsync = async;
+        if (async && !mFirstLayout) {
+            post(mStartAsyncPanelContentInflation);
+        }
+    }
+
+    /**
+     * Check whether the panel content stub is inflated in the background
+     */
+    public boolean isPanelContentAsync() {
+        return mPanelContentAsync;
+    }
+
+    /**
+     * Sets the listener told about the inflation of the panel content stub.
+     *
+     * @param listener
+     */
+    public void setPanelContentListener(PanelContentListener listener) {
+        mPanelContentListener = listener;
+    }
+
+    /**
+     * Inflates the panel content stub now, if it has not been inflated yet. A background inflation
+     * in progress is then discarded.
+     */
+    public void inflatePanelContent() {
+        if (mPanelContentStub == null) {
+            return;
+        }
+        ViewStub stub = mPanelContentStub;
+        mPanelContentStub = null;
+        mAsyncPanelContentStub = null;
+        onPanelContentInflated(stub.inflate(), false);
+    }
+
+    private final Runnable mStartAsyncPanelContentInflation = new Runnable() {
+        @Override
+        public void run() {
+            startAsyncPanelContentInflation();
+        }
+    };
+
+    /**
+     * Starts inflating the layout of the panel content stub in the background. The stub is
+     * replaced on the main thread once done, unless it was inflated synchronously meanwhile.
+     */
+    private void startAsyncPanelContentInflation() {
+        final ViewStub stub = mPanelContentStub;
+        if (!mPanelContentAsync || stub == null || mAsyncPanelContentStub == stub
+                || !(stub.getParent() instanceof ViewGroup) || stub.getLayoutResource() == 0) {
+            return;
+        }
+        mAsyncPanelContentStub = stub;
+        new AsyncLayoutInflater(getContext()).inflate(stub.getLayoutResource(), (ViewGroup) stub.getParent(),
+                new AsyncLayoutInflater.OnInflateFinishedListener() {
+                    @Override
+                    public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                        if (mPanelContentStub != stub || mAsyncPanelContentStub != stub
+                                || stub.getParent() != parent) {
+                            return;
+                        }
+                        mPanelContentStub = null;
+                        mAsyncPanelContentStub = null;
+                        replaceStub(stub, parent, view);
+                        onPanelContentInflated(view, true);
+                    }
+                });
+        if (mPanelContentListener != null) {
+            mPanelContentListener.onPanelContentInflationStarted(this);
+        }
+    }
+
+    /**
+     * Puts a view inflated from the layout of the stub in its place, as ViewStub.inflate() does.
+     */
+    private static void replaceStub(ViewStub stub, ViewGroup parent, View view) {
+        if (stub.getInflatedId() != NO_ID) {
+            view.setId(stub.getInflatedId());
+        }
+        final int index = parent.indexOfChild(stub);
+        final ViewGroup.LayoutParams lp = stub.getLayoutParams();
+        parent.removeViewInLayout(stub);
+        if (lp != null) {
+            parent.addView(view, index, lp);
+        } else {
+            parent.addView(view, index);
+        }
+    }
+
+    private void onPanelContentInflated(View content, boolean fromBackground) {
+        resolveChildViews();
+        mDragViewHitTarget.invalidate();
+        mScrollableViewHitTarget.invalidate();
+        if (mPanelContentListener != null) {
+            mPanelContentListener.onPanelContentInflated(this, content, fromBackground);
+        }
+    }
+
+    /**
+     * @return false while the panel content stub is waiting to be inflated
+     */
+    public boolean isPanelContentInflated() {
+        return mPanelContentStub == null;
+    }
+
+    /**
+     * Inflates the panel content when the panel goes to a state where it is shown open.
+     */
+    private void inflatePanelContentFor(PanelState state) {
+        if (state == PanelState.EXPANDED || state == PanelState.ANCHORED) {
+            inflatePanelContent();
         }
     }
 
@@ -366,6 +799,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
             throw new IllegalArgumentException("gravity must be set to either top or bottom");
         }
         mIsSlidingUp = gravity == Gravity.BOTTOM;
+        mShadowDrawable = null;
         if (!mFirstLayout) {
             requestLayout();
         }
@@ -524,6 +958,26 @@ public class SlidingUpPanelLayout extends ViewGroup {
         mFadeOnClickListener = listener;
     }
 
+    /**
+     * Sets a monitor recording the frame timing of the panel while it is dragged or settles.
+     * Use null to stop monitoring.
+     *
+     * @param monitor
+     */
+    public void setPanelPerformanceMonitor(PanelPerformanceMonitor monitor) {
+        if (mPerformanceMonitor != null) {
+            mPerformanceMonitor.cancel();
+        }
+        mPerformanceMonitor = monitor;
+    }
+
+    /**
+     * @return the monitor recording the frame timing of the panel, if any
+     */
+    public PanelPerformanceMonitor getPanelPerformanceMonitor() {
+        return mPerformanceMonitor;
+    }
+
     /**
      * Set the draggable view portion. Use to null, to allow the whole panel to be draggable
      *
@@ -534,6 +988,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
             mDragView.setOnClickListener(null);
         }
         mDragView = dragView;
+        mDragViewHitTarget.invalidate();
         if (mDragView != null) {
             mDragView.setClickable(true);
             mDragView.setFocusable(false);
@@ -575,6 +1030,8 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     public void setScrollableView(View scrollableView) {
         mScrollableView = scrollableView;
+        mScrollableViewHitTarget.invalidate();
+        mScrollableViewHelper.onScrollableViewChanged(scrollableView);
     }
 
     /**
@@ -584,6 +1041,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     public void setScrollableViewHelper(ScrollableViewHelper helper) {
         mScrollableViewHelper = helper;
+        mScrollableViewHelper.onScrollableViewChanged(mScrollableView);
     }
 
     /**
@@ -594,6 +1052,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     public void setAnchorPoint(float anchorPoint) {
         if (anchorPoint > 0 && anchorPoint <= 1) {
+            applySnapPoints(anchorPoint < 1 ? new float[]{anchorPoint} : null);
             mAnchorPoint = anchorPoint;
             mFirstLayout = true;
             requestLayout();
@@ -609,6 +1068,177 @@ public class SlidingUpPanelLayout extends ViewGroup {
         return mAnchorPoint;
     }
 
+    /**
+     * Set the intermediate points where the panel can stop during sliding, replacing the anchor
+     * point. The lowest one becomes the anchor point.
+     *
+     * @param snapPoints Values between 0 and 1 exclusive, determining the position of the snap
+     *                   points starting from the top of the layout. None to remove them.
+     */
+    public void setSnapPoints(float... snapPoints) {
+        applySnapPoints(snapPoints);
+        mFirstLayout = true;
+        requestLayout();
+    }
+
+    /**
+     * Gets the intermediate points where the panel can stop during sliding
+     *
+     * @return the snap points sorted ascending, empty if there are none
+     */
+    public float[] getSnapPoints() {
+        return mSnapPoints.clone();
+    }
+
+    /**
+     * Gets the snap point the panel rests at
+     *
+     * @return the index of the snap point in {@link #getSnapPoints()}, or -1 if the panel does not
+     * rest at a snap point
+     */
+    public int getPanelSnapPoint() {
+        return mSnapPointIndex;
+    }
+
+    /**
+     * Slide the panel to the given snap point. The panel state becomes
+     * {@link PanelState#ANCHORED} once it rests there.
+     *
+     * @param index index of the snap point in {@link #getSnapPoints()}
+     */
+    public void setPanelSnapPoint(int index) {
+        if (index < 0 || index >= mSnapPoints.length) {
+            throw new IllegalArgumentException("No snap point at index " + index);
+        }
+
+        // Abort any running animation, to allow state change
+        if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
+            mDragHelper.abort();
+        }
+        mPendingSlideOffset = Float.NaN;
+
+        if (!isEnabled()
+                || (!mFirstLayout && mSlideableView == null)
+                || (mSlideState == PanelState.ANCHORED && index == mSnapPointIndex)
+                || mSlideState == PanelState.DRAGGING) return;
+
+        if (mFirstLayout) {
+            setPanelStateInternal(PanelState.ANCHORED);
+            setSnapPointIndexInternal(index);
+        } else if (mSlideState == PanelState.HIDDEN) {
+            showPanelAndSlideTo(mSnapPoints[index]);
+        } else {
+            smoothSlideTo(mSnapPoints[index], 0);
+        }
+    }
+
+    /**
+     * Sets whether a fling settles at the stop nearest to where the panel would come to rest if it
+     * decelerated freely, instead of the next stop in the direction of the fling. A hard fling can
+     * then go past several snap points in a single gesture.
+     *
+     * @param projectFling
+     */
+    public void setProjectFling(boolean projectFling) {
+        mProjectFling = projectFling;
+    }
+
+    /**
+     * Check whether a fling settles at the stop nearest to where the panel would come to rest
+     */
+    public boolean isProjectFling() {
+        return mProjectFling;
+    }
+
+    /**
+     * Sets whether the panel follows the finger once per display frame instead of on every touch
+     * event. On touch screens sampling faster than the display refreshes, listeners, parallax and
+     * invalidation then run once per rendered frame. Requires API 16.
+     *
+     * @param coalesceDrag
+     */
+    public void setCoalesceDrag(boolean coalesceDrag) {
+        mCoalesceDrag = coalesceDrag;
+        if (mDragHelper != null) {
+            mDragHelper.setCoalesceDragToFrames(coalesceDrag);
+        }
+    }
+
+    /**
+     * Check whether the panel follows the finger once per display frame
+     */
+    public boolean isCoalesceDrag() {
+        return mCoalesceDrag;
+    }
+
+    /**
+     * Sets whether the panel is drawn where the finger is predicted to be at the next frame,
+     * instead of at the last reported touch position, so it does not trail behind fast drags.
+     *
+     * @param predictDrag
+     */
+    public void setPredictDrag(boolean predictDrag) {
+        mPredictDrag = predictDrag;
+        if (mDragHelper != null) {
+            mDragHelper.setDragPredictionEnabled(predictDrag);
+        }
+    }
+
+    /**
+     * Check whether the panel is drawn where the finger is predicted to be at the next frame
+     */
+    public boolean isPredictDrag() {
+        return mPredictDrag;
+    }
+
+    /**
+     * Sets whether listeners are only told about the states the panel rests in, at most once per
+     * frame. Transient states such as DRAGGING are then skipped, and a listener sees a single
+     * COLLAPSED to EXPANDED change for a whole drag and settle.
+     *
+     * @param coalesceStateChanges
+     */
+    public void setCoalesceStateChanges(boolean coalesceStateChanges) {
+        mCoalesceStateChanges = coalesceStateChanges;
+        mDispatchedPanelState = mSlideState;
+    }
+
+    /**
+     * Check whether listeners are only told about the states the panel rests in
+     */
+    public boolean isCoalesceStateChanges() {
+        return mCoalesceStateChanges;
+    }
+
+    /**
+     * Validates and stores the snap points, whether set in code or through umanoSnapPoints.
+     */
+    private void applySnapPoints(float[] snapPoints) {
+        float[] points = snapPoints != null ? snapPoints.clone() : new float[0];
+        for (float point : points) {
+            if (!(point > 0 && point < 1)) {
+                throw new IllegalArgumentException("Snap points must be between 0 and 1 exclusive.");
+            }
+        }
+        Arrays.sort(points);
+        // Drop the duplicates
+        int count = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (count == 0 || points[i] != points[count - 1]) {
+                points[count++] = points[i];
+            }
+        }
+        mSnapPoints = Arrays.copyOf(points, count);
+        mStops = new float[count + 2];
+        mStops[0] = 0.f;
+        System.arraycopy(mSnapPoints, 0, mStops, 1, count);
+        mStops[count + 1] = 1.f;
+        mAnchorPoint = count > 0 ? mSnapPoints[0] : 1.f;
+        if (mSnapPointIndex >= count) {
+            mSnapPointIndex = count > 0 ? 0 : -1;
+        }
+    }
+
     /**
      * Sets whether or not the panel overlays the content
      *
@@ -641,6 +1271,94 @@ public class SlidingUpPanelLayout extends ViewGroup {
         return mClipPanel;
     }
 
+    /**
+     * Sets whether the panel fully hides what is under it. Use it when the panel is opaque but its
+     * background drawable does not report it, so the covered part of the main content is not
+     * drawn, in overlay mode too.
+     *
+     * @param opaque
+     */
+    public void setPanelOpaque(boolean opaque) {
+        mPanelOpaque = opaque;
+        invalidate();
+    }
+
+    /**
+     * Check whether the panel is declared to fully hide what is under it
+     */
+    public boolean isPanelOpaque() {
+        return mPanelOpaque;
+    }
+
+    /**
+     * Sets the engine computing the motion of the panel when it settles after a release or a
+     * state change, for instance a {@link SpringSettleEngine}.
+     *
+     * @param engine
+     */
+    public void setSettleEngine(SettleEngine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Settle engine may not be null");
+        }
+        mSettleEngine = engine;
+        if (mDragHelper != null) {
+            mDragHelper.setSettleEngine(engine);
+        }
+    }
+
+    /**
+     * @return the engine computing the motion of the panel when it settles
+     */
+    public SettleEngine getSettleEngine() {
+        return getDragHelper().getSettleEngine();
+    }
+
+    /**
+     * Sets whether the main content keeps its size while the panel is dragged or settles below the
+     * collapsed position. If set, the main content is revealed or covered using translation and
+     * clipping and it is resized only once, when the panel comes to rest.
+     *
+     * @param defer
+     */
+    public void setDeferMainViewResize(boolean defer) {
+        mDeferMainViewResize = defer;
+        if (!defer) {
+            commitDeferredMainViewResize();
+        }
+    }
+
+    /**
+     * Check whether or not the main content is resized only when the panel comes to rest
+     */
+    public boolean isDeferMainViewResize() {
+        return mDeferMainViewResize;
+    }
+
+    /**
+     * Sets how the panel position is carried across changes of the layout height, for instance
+     * when resizing a multi-window or freeform window or when the input method resizes it. By
+     * default the panel goes back to the position of its state. With
+     * {@link #RESIZE_POLICY_FRACTION} or {@link #RESIZE_POLICY_PIXELS}, a panel between its stops
+     * keeps its slide offset or its distance from the collapsed position, and a drag or settle in
+     * progress carries on.
+     *
+     * @param policy One of {@link #RESIZE_POLICY_RESET}, {@link #RESIZE_POLICY_FRACTION} or
+     *               {@link #RESIZE_POLICY_PIXELS}
+     */
+    public void setResizePolicy(int policy) {
+        if (policy != RESIZE_POLICY_RESET && policy != RESIZE_POLICY_FRACTION && policy != RESIZE_POLICY_PIXELS) {
+            throw new IllegalArgumentException("Unknown resize policy " + policy);
+        }
+        mResizePolicy = policy;
+    }
+
+    /**
+     * @return How the panel position is carried across changes of the layout height
+     */
+    public int getResizePolicy() {
+        return mResizePolicy;
+    }
+
 
     void dispatchOnPanelSlide(View panel) {
         synchronized (mPanelSlideListeners) {
@@ -652,12 +1370,57 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
 
     void dispatchOnPanelStateChanged(View panel, PanelState previousState, PanelState newState) {
+        if (!mCoalesceStateChanges) {
+            mDispatchedPanelState = newState;
+            notifyPanelStateChanged(panel, previousState, newState);
+        }
+        // Accessibility events and coalesced listeners wait for the panel to come to rest
+        if (!mSettledStateDispatchPending) {
+            mSettledStateDispatchPending = true;
+            ViewCompat.postOnAnimation(this, mDispatchSettledState);
+        }
+    }
+
+    private void notifyPanelStateChanged(View panel, PanelState previousState, PanelState newState) {
         synchronized (mPanelSlideListeners) {
             for (PanelSlideListener l : mPanelSlideListeners) {
                 l.onPanelStateChanged(panel, previousState, newState);
             }
         }
-        sendAccessibilityEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
+    }
+
+    /**
+     * Reports the state the panel rests in, once per frame at most. Nothing is reported while the
+     * panel is dragged, the next state change posts it again.
+     */
+    private final Runnable mDispatchSettledState = new Runnable() {
+        @Override
+        public void run() {
+            mSettledStateDispatchPending = false;
+            final PanelState state = mSlideState;
+            if (state == PanelState.DRAGGING) {
+                return;
+            }
+            if (mCoalesceStateChanges && state != mDispatchedPanelState) {
+                PanelState previousState = mDispatchedPanelState;
+                mDispatchedPanelState = state;
+                notifyPanelStateChanged(SlidingUpPanelLayout.this, previousState, state);
+            }
+            if (state != mAnnouncedPanelState) {
+                mAnnouncedPanelState = state;
+                sendAccessibilityEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
+            }
+        }
+    };
+
+    void dispatchOnPanelSnapPointChanged(View panel, int previousIndex, int newIndex) {
+        synchronized (mPanelSlideListeners) {
+            for (PanelSlideListener l : mPanelSlideListeners) {
+                if (l instanceof PanelSnapPointListener) {
+                    ((PanelSnapPointListener) l).onPanelSnapPointChanged(panel, previousIndex, newIndex);
+                }
+            }
+        }
     }
 
     void updateObscuredViewVisibility() {
@@ -672,7 +1435,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
         final int right;
         final int top;
         final int bottom;
-        if (mSlideableView != null && hasOpaqueBackground(mSlideableView)) {
+        if (mSlideableView != null && isSlideableViewOpaque()) {
             left = mSlideableView.getLeft();
             right = mSlideableView.getRight();
             top = mSlideableView.getTop();
@@ -692,18 +1455,47 @@ public class SlidingUpPanelLayout extends ViewGroup {
         } else {
             vis = VISIBLE;
         }
-        child.setVisibility(vis);
+        child.setVisibility(vis);
+    }
+
+    void setAllChildrenVisible() {
+        for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == INVISIBLE) {
+                child.setVisibility(VISIBLE);
+            }
+        }
     }
 
-    void setAllChildrenVisible() {
+    /**
+     * Promotes the children that allow it to a hardware layer while the panel moves, so that
+     * moving and fading them does not re-record their whole view hierarchy on every frame.
+     * Children that already have a layer type set by the app are left alone.
+     *
+     * @param moving true if the panel is being dragged or is settling
+     */
+    @SuppressLint("NewApi")
+    void updateChildLayers(boolean moving) {
         for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
             final View child = getChildAt(i);
-            if (child.getVisibility() == INVISIBLE) {
-                child.setVisibility(VISIBLE);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (moving) {
+                if (lp.layerOnSlide && !lp.layerPromoted && child.getVisibility() == VISIBLE
+                        && child.getLayerType() == LAYER_TYPE_NONE) {
+                    lp.layerPromoted = true;
+                    child.setLayerType(LAYER_TYPE_HARDWARE, null);
+                }
+            } else if (lp.layerPromoted) {
+                lp.layerPromoted = false;
+                child.setLayerType(LAYER_TYPE_NONE, null);
             }
         }
     }
 
+    private boolean isSlideableViewOpaque() {
+        return mPanelOpaque || hasOpaqueBackground(mSlideableView);
+    }
+
     private static boolean hasOpaqueBackground(View v) {
         final Drawable bg = v.getBackground();
         return bg != null && bg.getOpacity() == PixelFormat.OPAQUE;
@@ -719,6 +1511,16 @@ public class SlidingUpPanelLayout extends ViewGroup {
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mFirstLayout = true;
+        updateChildLayers(false);
+        if (mPerformanceMonitor != null) {
+            mPerformanceMonitor.cancel();
+        }
+        if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
+            // Finish the settle now, which also removes its frame callback
+            mDragHelper.abort();
+        }
+        removeCallbacks(mDispatchSettledState);
+        mSettledStateDispatchPending = false;
     }
 
     @Override
@@ -748,7 +1550,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         // If the sliding panel is not visible, then put the whole view in the hidden state
         if (mSlideableView.getVisibility() != VISIBLE) {
-            mSlideState = PanelState.HIDDEN;
+            resetPanelState(PanelState.HIDDEN);
         }
 
         int layoutHeight = heightSize - getPaddingTop() - getPaddingBottom();
@@ -761,6 +1563,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
             // We always measure the sliding panel in order to know it's height (needed for show panel)
             if (child.getVisibility() == GONE && i == 0) {
+                mMeasuredChildren[i] = null;
                 continue;
             }
 
@@ -800,16 +1603,39 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 childHeightSpec = MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY);
             }
 
-            child.measure(childWidthSpec, childHeightSpec);
+            measureChildIfNeeded(i, child, childWidthSpec, childHeightSpec);
 
             if (child == mSlideableView) {
-                mSlideRange = mSlideableView.getMeasuredHeight() - mPanelHeight;
+                final int measuredHeight = mSlideableView.getMeasuredHeight();
+                if (measuredHeight != mSlideRangeMeasuredHeight || mPanelHeight != mSlideRangePanelHeight) {
+                    mSlideRangeMeasuredHeight = measuredHeight;
+                    mSlideRangePanelHeight = mPanelHeight;
+                    mSlideRange = measuredHeight - mPanelHeight;
+                }
             }
         }
 
         setMeasuredDimension(widthSize, heightSize);
     }
 
+    /**
+     * Measures a child unless it was already measured with the same specs and has not requested a
+     * layout since. The hidden panel follows the same rule, so that its height is up to date when
+     * it is shown.
+     */
+    private void measureChildIfNeeded(int index, View child, int widthSpec, int heightSpec) {
+        if (mMeasuredChildren[index] == child
+                && mChildWidthSpecs[index] == widthSpec
+                && mChildHeightSpecs[index] == heightSpec
+                && !child.isLayoutRequested()) {
+            return;
+        }
+        child.measure(widthSpec, heightSpec);
+        mMeasuredChildren[index] = child;
+        mChildWidthSpecs[index] = widthSpec;
+        mChildHeightSpecs[index] = heightSpec;
+    }
+
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         final int paddingLeft = getPaddingLeft();
@@ -823,7 +1649,11 @@ public class SlidingUpPanelLayout extends ViewGroup {
                     mSlideOffset = 1.0f;
                     break;
                 case ANCHORED:
-                    mSlideOffset = mAnchorPoint;
+                    if (!Float.isNaN(mRestoredSlideOffset)) {
+                        mSlideOffset = mRestoredSlideOffset;
+                    } else {
+                        mSlideOffset = mSnapPointIndex >= 0 ? mSnapPoints[mSnapPointIndex] : mAnchorPoint;
+                    }
                     break;
                 case HIDDEN:
                     int newTop = computePanelTopPosition(0.0f) + (mIsSlidingUp ? +mPanelHeight : -mPanelHeight);
@@ -833,7 +1663,29 @@ public class SlidingUpPanelLayout extends ViewGroup {
                     mSlideOffset = 0.f;
                     break;
             }
+            mRestoredSlideOffset = Float.NaN;
+        }
+
+        boolean retargetSettle = false;
+        if (!mFirstLayout && !Float.isNaN(mPendingSlideOffset) && mSlideState == PanelState.HIDDEN) {
+            // The panel was just shown again, start from its hidden position in the new measurements
+            int hiddenTop = computePanelTopPosition(0.0f) + (mIsSlidingUp ? +mPanelHeight : -mPanelHeight);
+            mSlideOffset = computeSlideOffset(hiddenTop);
+        } else if (!mFirstLayout && mResizePolicy != RESIZE_POLICY_RESET
+                && mSlideRange != mLaidOutSlideRange && mLaidOutSlideRange > 0 && mSlideRange > 0) {
+            final float slideOffset = mSlideState == PanelState.ANCHORED && mSnapPointIndex >= 0
+                    ? mSnapPoints[mSnapPointIndex]
+                    : remapSlideOffset(mSlideOffset, mLaidOutSlideRange);
+            if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
+                mSettleTargetOffset = remapSlideOffset(mSettleTargetOffset, mLaidOutSlideRange);
+                retargetSettle = true;
+            }
+            if (slideOffset != mSlideOffset) {
+                mSlideOffset = slideOffset;
+                dispatchOnPanelSlide(mSlideableView);
+            }
         }
+        mLaidOutSlideRange = mSlideRange;
 
         for (int i = 0; i < childCount; i++) {
             final View child = getChildAt(i);
@@ -865,29 +1717,82 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         if (mFirstLayout) {
             updateObscuredViewVisibility();
+            if (mPanelContentAsync && mPanelContentStub != null) {
+                // Leave the first frame alone
+                post(mStartAsyncPanelContentInflation);
+            }
         }
         applyParallaxForCurrentSlideOffset();
+        if (mMainViewResizePending) {
+            applyDeferredMainViewTranslation(mSlideableView.getTop());
+        }
+
+        // Children may have moved inside the panel, resolve the hit targets again on next use
+        mDragViewHitTarget.invalidate();
+        mScrollableViewHitTarget.invalidate();
 
         mFirstLayout = false;
+
+        if (!Float.isNaN(mPendingSlideOffset)) {
+            final float slideOffset = mPendingSlideOffset;
+            mPendingSlideOffset = Float.NaN;
+            smoothSlideTo(slideOffset, 0);
+        } else if (retargetSettle) {
+            // Keep settling from where the panel now is, towards the same stop in the new range
+            smoothSlideTo(mSettleTargetOffset, 0);
+        }
+    }
+
+    /**
+     * Maps a slide offset computed with a previous slide range to the current one, following the
+     * resize policy. The collapsed and expanded positions and the snap points are fractions of
+     * the range and stay as they are, while the hidden position keeps its distance in pixels.
+     */
+    private float remapSlideOffset(float slideOffset, int oldSlideRange) {
+        if (slideOffset == 0 || slideOffset >= 1) {
+            return slideOffset;
+        }
+        // Offsets derived from whole pixels rarely equal a snap point exactly
+        final float tolerance = 1.f / oldSlideRange;
+        for (float snapPoint : mSnapPoints) {
+            if (Math.abs(slideOffset - snapPoint) <= tolerance) {
+                return snapPoint;
+            }
+        }
+        if (slideOffset < 0 || mResizePolicy == RESIZE_POLICY_PIXELS) {
+            return Math.min(slideOffset * oldSlideRange / mSlideRange, 1.f);
+        }
+        return slideOffset;
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        // Recalculate sliding panes and their details
-        if (h != oldh) {
+        // Recalculate sliding panes and their details, unless the resize policy carries the
+        // offset over in onLayout
+        if (h != oldh && mResizePolicy == RESIZE_POLICY_RESET) {
             mFirstLayout = true;
         }
     }
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
+        // Nested scrolling children drive the panel through the nested scrolling callbacks
+        if (mIsNestedScrollTouch) {
+            return false;
+        }
+
         // If the scrollable view is handling touch, never intercept
         if (mIsScrollableViewHandlingTouch || !isTouchEnabled()) {
-            mDragHelper.abort();
+            if (mDragHelper != null) {
+                mDragHelper.abort();
+            }
             return false;
         }
 
+        // The first touch creates the drag helper
+        getDragHelper();
+
         final int action = MotionEventCompat.getActionMasked(ev);
         final float x = ev.getX();
         final float y = ev.getY();
@@ -900,12 +1805,13 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 mIsUnableToDrag = false;
                 mInitialMotionX = x;
                 mInitialMotionY = y;
-                if (!isViewUnder(mDragView, (int) x, (int) y)) {
+                if (!mDragViewHitTarget.isUnder(mDragView, (int) x, (int) y)) {
                     mDragHelper.cancel();
                     mIsUnableToDrag = true;
                     return false;
                 }
-
+                // Inflate before the drag starts, so the slide range does not change under it
+                inflatePanelContent();
                 break;
             }
 
@@ -930,7 +1836,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 // Check if this was a click on the faded part of the screen, and fire off the listener if there is one.
                 if (ady <= dragSlop
                         && adx <= dragSlop
-                        && mSlideOffset > 0 && !isViewUnder(mSlideableView, (int) mInitialMotionX, (int) mInitialMotionY) && mFadeOnClickListener != null) {
+                        && mSlideOffset > 0 && !isChildUnder(mSlideableView, (int) mInitialMotionX, (int) mInitialMotionY) && mFadeOnClickListener != null) {
                     playSoundEffect(android.view.SoundEffectConstants.CLICK);
                     mFadeOnClickListener.onClick(this);
                     return true;
@@ -946,7 +1852,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
             return super.onTouchEvent(ev);
         }
         try {
-            mDragHelper.processTouchEvent(ev);
+            getDragHelper().processTouchEvent(ev);
             return true;
         } catch (Exception ex) {
             // Ignore the pointer out of range exception
@@ -959,7 +1865,9 @@ public class SlidingUpPanelLayout extends ViewGroup {
         final int action = MotionEventCompat.getActionMasked(ev);
 
         if (!isEnabled() || !isTouchEnabled() || (mIsUnableToDrag && action != MotionEvent.ACTION_DOWN)) {
-            mDragHelper.abort();
+            if (mDragHelper != null) {
+                mDragHelper.abort();
+            }
             return super.dispatchTouchEvent(ev);
         }
 
@@ -967,9 +1875,20 @@ public class SlidingUpPanelLayout extends ViewGroup {
         final float y = ev.getY();
 
         if (action == MotionEvent.ACTION_DOWN) {
+            // Resolve the hit targets once for the whole gesture
+            mDragViewHitTarget.update(mDragView);
+            mScrollableViewHitTarget.update(mScrollableView);
             mIsScrollableViewHandlingTouch = false;
+            mIsNestedScrollTouch = mScrollableView != null
+                    && ViewCompat.isNestedScrollingEnabled(mScrollableView)
+                    && mScrollableViewHitTarget.isUnder(mScrollableView, (int) x, (int) y)
+                    && mDragViewHitTarget.isUnder(mDragView, (int) x, (int) y);
             mPrevMotionX = x;
             mPrevMotionY = y;
+        } else if (mIsNestedScrollTouch) {
+            // The scrollable view handles the whole gesture and hands the panel movement over
+            // through nested scrolling
+            return super.dispatchTouchEvent(ev);
         } else if (action == MotionEvent.ACTION_MOVE) {
             float dx = x - mPrevMotionX;
             float dy = y - mPrevMotionY;
@@ -983,7 +1902,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
             // If the scroll view isn't under the touch, pass the
             // event along to the dragView.
-            if (!isViewUnder(mScrollableView, (int) mInitialMotionX, (int) mInitialMotionY)) {
+            if (!mScrollableViewHitTarget.isUnder(mScrollableView, (int) mInitialMotionX, (int) mInitialMotionY)) {
                 return super.dispatchTouchEvent(ev);
             }
 
@@ -1024,7 +1943,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 // Was the panel handling the touch previously?
                 // Then we need to rejigger things so that the
                 // child gets a proper down event.
-                if (!mIsScrollableViewHandlingTouch && mDragHelper.isDragging()) {
+                if (!mIsScrollableViewHandlingTouch && mDragHelper != null && mDragHelper.isDragging()) {
                     mDragHelper.cancel();
                     ev.setAction(MotionEvent.ACTION_DOWN);
                 }
@@ -1035,7 +1954,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
         } else if (action == MotionEvent.ACTION_UP) {
             // If the scrollable view was handling the touch and we receive an up
             // we want to clear any previous dragging state so we don't intercept a touch stream accidentally
-            if (mIsScrollableViewHandlingTouch) {
+            if (mIsScrollableViewHandlingTouch && mDragHelper != null) {
                 mDragHelper.setDragState(ViewDragHelper.STATE_IDLE);
             }
         }
@@ -1044,16 +1963,204 @@ public class SlidingUpPanelLayout extends ViewGroup {
         return super.dispatchTouchEvent(ev);
     }
 
-    private boolean isViewUnder(View view, int x, int y) {
-        if (view == null) return false;
-        int[] viewLocation = new int[2];
-        view.getLocationOnScreen(viewLocation);
-        int[] parentLocation = new int[2];
-        this.getLocationOnScreen(parentLocation);
-        int screenX = parentLocation[0] + x;
-        int screenY = parentLocation[1] + y;
-        return screenX >= viewLocation[0] && screenX < viewLocation[0] + view.getWidth() &&
-                screenY >= viewLocation[1] && screenY < viewLocation[1] + view.getHeight();
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int axes) {
+        return onStartNestedScroll(child, target, axes, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int axes, int type) {
+        // Flings of the child run after the finger is up, the panel only follows the finger
+        return isEnabled() && isTouchEnabled()
+                && type == ViewCompat.TYPE_TOUCH
+                && (axes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0
+                && mIsNestedScrollTouch && target == mScrollableView
+                && child == mSlideableView
+                && mSlideState != PanelState.HIDDEN;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        onNestedScrollAccepted(child, target, axes, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes, int type) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes, type);
+        mIsNestedDragging = false;
+        // The intercepting touch path does not see nested scrolling gestures, which only start
+        // on the drag view
+        mIsUnableToDrag = false;
+        inflatePanelContent();
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        onNestedPreScroll(target, dx, dy, consumed, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed, int type) {
+        // Movement expanding the panel goes to the panel first, until it is fully expanded
+        final boolean expanding = mIsSlidingUp ? dy > 0 : dy < 0;
+        if (type == ViewCompat.TYPE_TOUCH && ((expanding && mSlideOffset < 1.0f) || mIsNestedDragging)) {
+            consumed[1] = dragPanelByNestedScroll(dy);
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        onNestedScroll(target, dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int type) {
+        // Movement collapsing the panel goes to the panel once the child is scrolled to its end
+        final boolean collapsing = mIsSlidingUp ? dyUnconsumed < 0 : dyUnconsumed > 0;
+        if (type == ViewCompat.TYPE_TOUCH && collapsing) {
+            dragPanelByNestedScroll(dyUnconsumed);
+        }
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        if (!mIsNestedDragging) {
+            return false;
+        }
+        // Scroll velocity is the opposite of the panel velocity
+        releaseNestedDrag(-velocityY);
+        return true;
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        return false;
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        onStopNestedScroll(target, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onStopNestedScroll(View target, int type) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target, type);
+        if (type == ViewCompat.TYPE_TOUCH && mIsNestedDragging) {
+            releaseNestedDrag(0);
+        }
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    /**
+     * Moves the panel by a nested scroll amount, capturing it first if needed.
+     *
+     * @param dy The scroll amount, the opposite of the panel movement
+     * @return the part of the scroll amount consumed by the panel
+     */
+    private int dragPanelByNestedScroll(int dy) {
+        if (dy == 0 || mSlideableView == null) {
+            return 0;
+        }
+        final ViewDragHelper helper = getDragHelper();
+        if (!mIsNestedDragging || !helper.isDragging()) {
+            // Catch the panel if it is settling, then capture it as a touch drag would
+            if (helper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
+                helper.abort();
+            }
+            if (!helper.tryCaptureViewForDrag(mSlideableView, ViewDragHelper.INVALID_POINTER)) {
+                return 0;
+            }
+            mIsNestedDragging = true;
+        }
+        final int oldTop = mSlideableView.getTop();
+        helper.dragCapturedViewBy(0, -dy);
+        final int consumed = oldTop - mSlideableView.getTop();
+        if (mSlideOffset >= 1.0f) {
+            // Fully expanded, hand the rest of the gesture back to the child
+            releaseNestedDrag(0);
+        }
+        return consumed;
+    }
+
+    private void releaseNestedDrag(float yvel) {
+        mIsNestedDragging = false;
+        getDragHelper().releaseCapturedView(0, yvel);
+    }
+
+    /**
+     * Hit tests a direct child of this layout in parent coordinates.
+     */
+    private static boolean isChildUnder(View child, int x, int y) {
+        if (child == null) return false;
+        final int left = child.getLeft() + (int) ViewCompat.getTranslationX(child);
+        final int top = child.getTop() + (int) ViewCompat.getTranslationY(child);
+        return x >= left && x < left + child.getWidth() &&
+                y >= top && y < top + child.getHeight();
+    }
+
+    /**
+     * Caches where a (possibly deeply nested) view sits inside the direct child of this layout that
+     * contains it. Since only the direct children move while the panel slides, the cached offset
+     * plus the current position of that child gives the position of the view in parent coordinates.
+     * The cache only holds for one gesture: it is resolved again on every ACTION_DOWN, and the view
+     * moving inside its child during the gesture (e.g. scrolled by a parent) is not picked up until
+     * the next one, the same way touch targets are kept from ACTION_DOWN.
+     */
+    private class HitTarget {
+        private View mView;
+        private View mChild;
+        private int mOffsetX;
+        private int mOffsetY;
+        private boolean mValid;
+
+        void invalidate() {
+            mValid = false;
+        }
+
+        void update(View view) {
+            mView = view;
+            mChild = null;
+            mValid = true;
+            if (view == null) {
+                return;
+            }
+            View child = view;
+            while (child.getParent() != SlidingUpPanelLayout.this) {
+                if (!(child.getParent() instanceof View)) {
+                    // Not one of our descendants, fall back to our own window position
+                    child = null;
+                    break;
+                }
+                child = (View) child.getParent();
+            }
+            mChild = child;
+            final View anchor = child != null ? child : SlidingUpPanelLayout.this;
+            anchor.getLocationInWindow(mTmpLocation);
+            final int anchorX = mTmpLocation[0];
+            final int anchorY = mTmpLocation[1];
+            view.getLocationInWindow(mTmpLocation);
+            mOffsetX = mTmpLocation[0] - anchorX;
+            mOffsetY = mTmpLocation[1] - anchorY;
+        }
+
+        boolean isUnder(View view, int x, int y) {
+            if (view == null) return false;
+            if (!mValid || mView != view) {
+                update(view);
+            }
+            int left = mOffsetX;
+            int top = mOffsetY;
+            if (mChild != null) {
+                left += mChild.getLeft() + (int) ViewCompat.getTranslationX(mChild);
+                top += mChild.getTop() + (int) ViewCompat.getTranslationY(mChild);
+            }
+            return x >= left && x < left + view.getWidth() &&
+                    y >= top && y < top + view.getHeight();
+        }
     }
 
     /*
@@ -1061,11 +2168,8 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     private int computePanelTopPosition(float slideOffset) {
         int slidingViewHeight = mSlideableView != null ? mSlideableView.getMeasuredHeight() : 0;
-        int slidePixelOffset = (int) (slideOffset * mSlideRange);
-        // Compute the top of the panel if its collapsed
-        return mIsSlidingUp
-                ? getMeasuredHeight() - getPaddingBottom() - mPanelHeight - slidePixelOffset
-                : getPaddingTop() - slidingViewHeight + mPanelHeight + slidePixelOffset;
+        return PanelGeometry.computePanelTopPosition(slideOffset, mSlideRange, mPanelHeight,
+                slidingViewHeight, getMeasuredHeight(), getPaddingTop(), getPaddingBottom(), mIsSlidingUp);
     }
 
     /*
@@ -1074,12 +2178,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
     private float computeSlideOffset(int topPosition) {
         // Compute the panel top position if the panel is collapsed (offset 0)
         final int topBoundCollapsed = computePanelTopPosition(0);
-
-        // Determine the new slide offset based on the collapsed top position and the new required
-        // top position
-        return (mIsSlidingUp
-                ? (float) (topBoundCollapsed - topPosition) / mSlideRange
-                : (float) (topPosition - topBoundCollapsed) / mSlideRange);
+        return PanelGeometry.computeSlideOffset(topPosition, topBoundCollapsed, mSlideRange, mIsSlidingUp);
     }
 
     /**
@@ -1099,44 +2198,70 @@ public class SlidingUpPanelLayout extends ViewGroup {
     public void setPanelState(PanelState state) {
 
         // Abort any running animation, to allow state change
-        if(mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING){
+        if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
             Log.d(TAG, "View is settling. Aborting animation.");
             mDragHelper.abort();
         }
+        mPendingSlideOffset = Float.NaN;
 
         if (state == null || state == PanelState.DRAGGING) {
             throw new IllegalArgumentException("Panel state cannot be null or DRAGGING.");
         }
+        inflatePanelContentFor(state);
         if (!isEnabled()
                 || (!mFirstLayout && mSlideableView == null)
                 || state == mSlideState
                 || mSlideState == PanelState.DRAGGING) return;
 
         if (mFirstLayout) {
+            mRestoredSlideOffset = Float.NaN;
             setPanelStateInternal(state);
+            setSnapPointIndexInternal(state == PanelState.ANCHORED && mSnapPoints.length > 0 ? 0 : -1);
         } else {
-            if (mSlideState == PanelState.HIDDEN) {
-                mSlideableView.setVisibility(View.VISIBLE);
-                requestLayout();
-            }
+            float slideOffset;
             switch (state) {
                 case ANCHORED:
-                    smoothSlideTo(mAnchorPoint, 0);
-                    break;
-                case COLLAPSED:
-                    smoothSlideTo(0, 0);
+                    slideOffset = mAnchorPoint;
                     break;
                 case EXPANDED:
-                    smoothSlideTo(1.0f, 0);
+                    slideOffset = 1.0f;
                     break;
                 case HIDDEN:
                     int newTop = computePanelTopPosition(0.0f) + (mIsSlidingUp ? +mPanelHeight : -mPanelHeight);
-                    smoothSlideTo(computeSlideOffset(newTop), 0);
+                    slideOffset = computeSlideOffset(newTop);
+                    break;
+                default:
+                    slideOffset = 0.f;
                     break;
             }
+            if (mSlideState == PanelState.HIDDEN) {
+                showPanelAndSlideTo(slideOffset);
+            } else {
+                smoothSlideTo(slideOffset, 0);
+            }
         }
     }
 
+    /**
+     * Shows the hidden panel and slides it to the given offset. The slide starts at the end of
+     * the next layout, once the panel has been measured and placed at its hidden position.
+     */
+    private void showPanelAndSlideTo(float slideOffset) {
+        mPendingSlideOffset = slideOffset;
+        mSlideableView.setVisibility(View.VISIBLE);
+        requestLayout();
+    }
+
+    /**
+     * Sets the state without telling listeners, for the initial, restored or implied states. The
+     * state becomes the baseline the next settled state is compared with.
+     */
+    private void resetPanelState(PanelState state) {
+        mSlideState = state;
+        mDispatchedPanelState = state;
+        mAnnouncedPanelState = state;
+    }
+
     private void setPanelStateInternal(PanelState state) {
         if (mSlideState == state) return;
         PanelState oldState = mSlideState;
@@ -1144,6 +2269,13 @@ public class SlidingUpPanelLayout extends ViewGroup {
         dispatchOnPanelStateChanged(this, oldState, state);
     }
 
+    private void setSnapPointIndexInternal(int index) {
+        if (mSnapPointIndex == index) return;
+        int oldIndex = mSnapPointIndex;
+        mSnapPointIndex = index;
+        dispatchOnPanelSnapPointChanged(this, oldIndex, index);
+    }
+
     /**
      * Update the parallax based on the current slide offset.
      */
@@ -1167,22 +2299,76 @@ public class SlidingUpPanelLayout extends ViewGroup {
         dispatchOnPanelSlide(mSlideableView);
         // If the slide offset is negative, and overlay is not on, we need to increase the
         // height of the main content
+        if (mOverlayContent) {
+            return;
+        }
         LayoutParams lp = (LayoutParams) mMainView.getLayoutParams();
-        int defaultHeight = getHeight() - getPaddingBottom() - getPaddingTop() - mPanelHeight;
-
-        if (mSlideOffset <= 0 && !mOverlayContent) {
-            // expand the main view
-            lp.height = mIsSlidingUp ? (newTop - getPaddingBottom()) : (getHeight() - getPaddingBottom() - mSlideableView.getMeasuredHeight() - newTop);
-            if (lp.height == defaultHeight) {
-                lp.height = LayoutParams.MATCH_PARENT;
+        if (mDeferMainViewResize) {
+            if (mSlideOffset <= 0 || lp.height != LayoutParams.MATCH_PARENT) {
+                deferMainViewResize();
+                applyDeferredMainViewTranslation(newTop);
             }
+        } else if (mSlideOffset <= 0) {
+            // expand the main view
+            lp.height = computeMainViewHeight(newTop);
             mMainView.requestLayout();
-        } else if (lp.height != LayoutParams.MATCH_PARENT && !mOverlayContent) {
+        } else if (lp.height != LayoutParams.MATCH_PARENT) {
             lp.height = LayoutParams.MATCH_PARENT;
             mMainView.requestLayout();
         }
     }
 
+    /*
+     * Computes the height of the main view for the given top position of the panel.
+     */
+    private int computeMainViewHeight(int panelTop) {
+        if (mSlideOffset > 0) {
+            return LayoutParams.MATCH_PARENT;
+        }
+        int defaultHeight = getHeight() - getPaddingBottom() - getPaddingTop() - mPanelHeight;
+        int height = mIsSlidingUp ? (panelTop - getPaddingBottom()) : (getHeight() - getPaddingBottom() - mSlideableView.getMeasuredHeight() - panelTop);
+        return height == defaultHeight ? LayoutParams.MATCH_PARENT : height;
+    }
+
+    /**
+     * Gives the main view, once, the largest size it can have while the panel is below the
+     * collapsed position. The part still under the panel is clipped in drawChild.
+     */
+    private void deferMainViewResize() {
+        LayoutParams lp = (LayoutParams) mMainView.getLayoutParams();
+        int fullHeight = getHeight() - getPaddingBottom() - getPaddingTop();
+        if (lp.height != fullHeight) {
+            lp.height = fullHeight;
+            mMainView.requestLayout();
+        }
+        mMainViewResizePending = true;
+    }
+
+    /**
+     * When the panel slides from the top, the main view sits below it, so it has to follow the
+     * bottom edge of the panel.
+     */
+    private void applyDeferredMainViewTranslation(int panelTop) {
+        if (!mIsSlidingUp && mSlideOffset <= 0) {
+            ViewCompat.setTranslationY(mMainView, panelTop + mSlideableView.getMeasuredHeight() - mMainView.getTop());
+        }
+    }
+
+    /**
+     * Gives the main view its final size once the panel is at rest.
+     */
+    private void commitDeferredMainViewResize() {
+        if (!mMainViewResizePending) {
+            return;
+        }
+        mMainViewResizePending = false;
+        ViewCompat.setTranslationY(mMainView, 0);
+        applyParallaxForCurrentSlideOffset();
+        LayoutParams lp = (LayoutParams) mMainView.getLayoutParams();
+        lp.height = computeMainViewHeight(mSlideableView.getTop());
+        mMainView.requestLayout();
+    }
+
     @Override
     protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
         boolean result;
@@ -1191,8 +2377,9 @@ public class SlidingUpPanelLayout extends ViewGroup {
         if (mSlideableView != null && mSlideableView != child) { // if main view
             // Clip against the slider; no sense drawing what will immediately be covered,
             // Unless the panel is set to overlay content
+            // In overlay mode only an opaque panel spanning the main view hides it
             canvas.getClipBounds(mTmpRect);
-            if (!mOverlayContent) {
+            if (!mOverlayContent || isPanelOccluding(child)) {
                 if (mIsSlidingUp) {
                     mTmpRect.bottom = Math.min(mTmpRect.bottom, mSlideableView.getTop());
                 } else {
@@ -1203,12 +2390,21 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 canvas.clipRect(mTmpRect);
             }
 
-            result = super.drawChild(canvas, child, drawingTime);
-
+            int fadeAlpha = 0;
             if (mCoveredFadeColor != 0 && mSlideOffset > 0) {
                 final int baseAlpha = (mCoveredFadeColor & 0xff000000) >>> 24;
-                final int imag = (int) (baseAlpha * mSlideOffset);
-                final int color = imag << 24 | (mCoveredFadeColor & 0xffffff);
+                fadeAlpha = (int) (baseAlpha * Math.min(mSlideOffset, 1.0f));
+            }
+
+            // No need to draw the main view if the fade will completely hide it
+            if (fadeAlpha < 0xff || !mClipPanel) {
+                result = super.drawChild(canvas, child, drawingTime);
+            } else {
+                result = false;
+            }
+
+            if (fadeAlpha > 0) {
+                final int color = fadeAlpha << 24 | (mCoveredFadeColor & 0xffffff);
                 mCoveredFadePaint.setColor(color);
                 canvas.drawRect(mTmpRect, mCoveredFadePaint);
             }
@@ -1221,6 +2417,16 @@ public class SlidingUpPanelLayout extends ViewGroup {
         return result;
     }
 
+    /**
+     * @return true if the panel hides everything of the main view below (or above) its edge
+     */
+    private boolean isPanelOccluding(View mainView) {
+        return mSlideableView.getVisibility() == VISIBLE
+                && isSlideableViewOpaque()
+                && mSlideableView.getLeft() <= mainView.getLeft()
+                && mSlideableView.getRight() >= mainView.getRight();
+    }
+
     /**
      * Smoothly animate mDraggingPane to the target X position within its range.
      *
@@ -1234,10 +2440,13 @@ public class SlidingUpPanelLayout extends ViewGroup {
         }
 
         int panelTop = computePanelTopPosition(slideOffset);
+        mSettleTargetOffset = slideOffset;
 
-        if (mDragHelper.smoothSlideViewTo(mSlideableView, mSlideableView.getLeft(), panelTop)) {
+        if (getDragHelper().smoothSlideViewTo(mSlideableView, mSlideableView.getLeft(), panelTop)) {
             setAllChildrenVisible();
-            ViewCompat.postInvalidateOnAnimation(this);
+            if (!mDragHelper.isSettlingOnFrameCallbacks()) {
+                ViewCompat.postInvalidateOnAnimation(this);
+            }
             return true;
         }
         return false;
@@ -1245,7 +2454,9 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
     @Override
     public void computeScroll() {
-        if (mDragHelper != null && mDragHelper.continueSettling(true)) {
+        // When settling on frame callbacks, the drag helper advances on its own
+        if (mDragHelper != null && !mDragHelper.isSettlingOnFrameCallbacks()
+                && mDragHelper.continueSettling(true)) {
             if (!isEnabled()) {
                 mDragHelper.abort();
                 return;
@@ -1260,7 +2471,8 @@ public class SlidingUpPanelLayout extends ViewGroup {
         super.draw(c);
 
         // draw the shadow
-        if (mShadowDrawable != null && mSlideableView != null) {
+        final Drawable shadowDrawable = mSlideableView != null ? getShadowDrawable() : null;
+        if (shadowDrawable != null) {
             final int right = mSlideableView.getRight();
             final int top;
             final int bottom;
@@ -1272,8 +2484,8 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 bottom = mSlideableView.getBottom() + mShadowHeight;
             }
             final int left = mSlideableView.getLeft();
-            mShadowDrawable.setBounds(left, top, right, bottom);
-            mShadowDrawable.draw(c);
+            shadowDrawable.setBounds(left, top, right, bottom);
+            shadowDrawable.draw(c);
         }
     }
 
@@ -1333,23 +2545,95 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
     @Override
     public Parcelable onSaveInstanceState() {
-        Bundle bundle = new Bundle();
-        bundle.putParcelable("superState", super.onSaveInstanceState());
-        bundle.putSerializable(SLIDING_STATE, mSlideState != PanelState.DRAGGING ? mSlideState : mLastNotDraggingSlideState);
-        return bundle;
+        SavedState ss = new SavedState(super.onSaveInstanceState());
+        ss.panelState = mSlideState.ordinal();
+        ss.slideOffset = mSlideOffset;
+        return ss;
     }
 
     @Override
     public void onRestoreInstanceState(Parcelable state) {
+        if (state instanceof SavedState) {
+            SavedState ss = (SavedState) state;
+            super.onRestoreInstanceState(ss.getSuperState());
+            restorePanelState(PanelState.values()[ss.panelState], ss.slideOffset);
+            return;
+        }
+        // State saved by previous versions of the library
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
-            mSlideState = (PanelState) bundle.getSerializable(SLIDING_STATE);
-            mSlideState = mSlideState == null ? DEFAULT_SLIDE_STATE : mSlideState;
+            PanelState slideState = (PanelState) bundle.getSerializable(SLIDING_STATE);
+            resetPanelState(slideState == null ? DEFAULT_SLIDE_STATE : slideState);
+            inflatePanelContentFor(mSlideState);
             state = bundle.getParcelable("superState");
         }
         super.onRestoreInstanceState(state);
     }
 
+    /**
+     * Restores the panel at the exact offset it was saved at when it was between the collapsed
+     * and expanded positions. A panel saved while being dragged is restored as resting on the
+     * nearest of the offsets it can stop at, so its state always matches one of them.
+     */
+    private void restorePanelState(PanelState state, float slideOffset) {
+        if (state == PanelState.DRAGGING) {
+            final int stop = SnapTargets.nearestIndex(mStops, slideOffset);
+            if (stop == mStops.length - 1) {
+                state = PanelState.EXPANDED;
+            } else if (stop > 0) {
+                state = PanelState.ANCHORED;
+                slideOffset = mStops[stop];
+            } else {
+                state = mLastNotDraggingSlideState == PanelState.HIDDEN ? PanelState.HIDDEN : PanelState.COLLAPSED;
+            }
+        }
+        resetPanelState(state);
+        mRestoredSlideOffset = Float.NaN;
+        if (state == PanelState.ANCHORED) {
+            mRestoredSlideOffset = slideOffset;
+            int index = mSnapPoints.length > 0 ? SnapTargets.nearestIndex(mSnapPoints, slideOffset) : -1;
+            mSnapPointIndex = index >= 0 && mSnapPoints[index] == slideOffset ? index : -1;
+        }
+        inflatePanelContentFor(state);
+    }
+
+    /**
+     * Saved panel state and exact slide offset.
+     */
+    static class SavedState extends BaseSavedState {
+        int panelState;
+        float slideOffset;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            panelState = in.readInt();
+            slideOffset = in.readFloat();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(panelState);
+            out.writeFloat(slideOffset);
+        }
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
     private class DragHelperCallback extends ViewDragHelper.Callback {
 
         @Override
@@ -1360,21 +2644,36 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         @Override
         public void onViewDragStateChanged(int state) {
+            updateChildLayers(state != ViewDragHelper.STATE_IDLE);
+            if (mPerformanceMonitor != null && state != ViewDragHelper.STATE_IDLE) {
+                mPerformanceMonitor.start(SlidingUpPanelLayout.this);
+            }
             if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_IDLE) {
                 mSlideOffset = computeSlideOffset(mSlideableView.getTop());
                 applyParallaxForCurrentSlideOffset();
+                commitDeferredMainViewResize();
 
                 if (mSlideOffset == 1) {
                     updateObscuredViewVisibility();
                     setPanelStateInternal(PanelState.EXPANDED);
+                    setSnapPointIndexInternal(-1);
                 } else if (mSlideOffset == 0) {
                     setPanelStateInternal(PanelState.COLLAPSED);
+                    setSnapPointIndexInternal(-1);
                 } else if (mSlideOffset < 0) {
                     setPanelStateInternal(PanelState.HIDDEN);
+                    setSnapPointIndexInternal(-1);
                     mSlideableView.setVisibility(View.INVISIBLE);
                 } else {
                     updateObscuredViewVisibility();
                     setPanelStateInternal(PanelState.ANCHORED);
+                    // The stops start with the collapsed offset, before the first snap point
+                    int index = SnapTargets.nearestIndex(mStops, mSlideOffset) - 1;
+                    setSnapPointIndexInternal(mSnapPoints.length > 0
+                            ? Math.max(0, Math.min(index, mSnapPoints.length - 1)) : -1);
+                }
+                if (mPerformanceMonitor != null) {
+                    mPerformanceMonitor.stop();
                 }
             }
         }
@@ -1392,36 +2691,24 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         @Override
         public void onViewReleased(View releasedChild, float xvel, float yvel) {
-            int target = 0;
-
             // direction is always positive if we are sliding in the expanded direction
             float direction = mIsSlidingUp ? -yvel : yvel;
 
-            if (direction > 0 && mSlideOffset <= mAnchorPoint) {
-                // swipe up -> expand and stop at anchor point
-                target = computePanelTopPosition(mAnchorPoint);
-            } else if (direction > 0 && mSlideOffset > mAnchorPoint) {
-                // swipe up past anchor -> expand
-                target = computePanelTopPosition(1.0f);
-            } else if (direction < 0 && mSlideOffset >= mAnchorPoint) {
-                // swipe down -> collapse and stop at anchor point
-                target = computePanelTopPosition(mAnchorPoint);
-            } else if (direction < 0 && mSlideOffset < mAnchorPoint) {
-                // swipe down past anchor -> collapse
-                target = computePanelTopPosition(0.0f);
-            } else if (mSlideOffset >= (1.f + mAnchorPoint) / 2) {
-                // zero velocity, and far enough from anchor point => expand to the top
-                target = computePanelTopPosition(1.0f);
-            } else if (mSlideOffset >= mAnchorPoint / 2) {
-                // zero velocity, and close enough to anchor point => go to anchor
-                target = computePanelTopPosition(mAnchorPoint);
+            float targetOffset;
+            if (mProjectFling && mSlideRange > 0) {
+                targetOffset = SnapTargets.computeProjectedReleaseOffset(mSlideOffset, mStops,
+                        direction / mSlideRange, SnapTargets.DEFAULT_DECELERATION_RATE);
             } else {
-                // settle at the bottom
-                target = computePanelTopPosition(0.0f);
+                targetOffset = SnapTargets.computeReleaseOffset(mSlideOffset, mStops, direction);
             }
+            int target = computePanelTopPosition(targetOffset);
+            mSettleTargetOffset = targetOffset;
 
             if (mDragHelper != null) {
                 mDragHelper.settleCapturedViewAt(releasedChild.getLeft(), target);
+                if (mDragHelper.isSettlingOnFrameCallbacks()) {
+                    return;
+                }
             }
             invalidate();
         }
@@ -1435,21 +2722,176 @@ public class SlidingUpPanelLayout extends ViewGroup {
         public int clampViewPositionVertical(View child, int top, int dy) {
             final int collapsedTop = computePanelTopPosition(0.f);
             final int expandedTop = computePanelTopPosition(1.0f);
-            if (mIsSlidingUp) {
-                return Math.min(Math.max(top, expandedTop), collapsedTop);
+            return PanelGeometry.clampPanelTop(top, collapsedTop, expandedTop, mIsSlidingUp);
+        }
+    }
+
+    /**
+     * Attributes of a panel, parsed once. Immutable, so that it can be shared by every panel
+     * created with the same style through {@link #SlidingUpPanelLayout(Context, PanelConfig)}.
+     */
+    public static final class PanelConfig {
+        final int gravity;
+        final int panelHeight;
+        final int shadowHeight;
+        final int parallaxOffset;
+        final int minFlingVelocity;
+        final int fadeColor;
+        final int dragViewResId;
+        final int scrollableViewResId;
+        final int panelContentStubResId;
+        final boolean panelContentAsync;
+        final boolean overlay;
+        final boolean clipPanel;
+        final boolean panelOpaque;
+        final boolean deferMainViewResize;
+        final float anchorPoint;
+        final float[] snapPoints;
+        final boolean projectFling;
+        final boolean coalesceDrag;
+        final boolean predictDrag;
+        final boolean coalesceStateChanges;
+        final PanelState initialState;
+        final int scrollInterpolatorResId;
+        final int settleEngine;
+        final int resizePolicy;
+
+        /**
+         * Parses the panel attributes of a style resource.
+         *
+         * @param context  The context to resolve the style with
+         * @param styleRes The style holding the panel attributes
+         * @return the parsed configuration
+         */
+        public static PanelConfig fromStyle(Context context, int styleRes) {
+            TypedArray ta = context.obtainStyledAttributes(styleRes, R.styleable.SlidingUpPanelLayout);
+            try {
+                return new PanelConfig(context, ta);
+            } finally {
+                ta.recycle();
+            }
+        }
+
+        /**
+         * Parses the panel attributes of an XML element, as the layout inflater does.
+         *
+         * @param context  The context to resolve the attributes with
+         * @param attrs    The attributes of the element, or null for the defaults
+         * @param defStyle The default style attribute, or 0
+         * @return the parsed configuration
+         */
+        public static PanelConfig obtain(Context context, AttributeSet attrs, int defStyle) {
+            if (attrs == null && defStyle == 0) {
+                return new PanelConfig(context, null);
+            }
+            TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.SlidingUpPanelLayout, defStyle, 0);
+            try {
+                return new PanelConfig(context, ta);
+            } finally {
+                ta.recycle();
+            }
+        }
+
+        private PanelConfig(Context context, TypedArray ta) {
+            final float density = context.getResources().getDisplayMetrics().density;
+            if (ta != null) {
+                gravity = ta.getInt(R.styleable.SlidingUpPanelLayout_android_gravity, Gravity.NO_GRAVITY);
+                panelHeight = ta.getDimensionPixelSize(R.styleable.SlidingUpPanelLayout_umanoPanelHeight,
+                        dpToPx(DEFAULT_PANEL_HEIGHT, density));
+                shadowHeight = ta.getDimensionPixelSize(R.styleable.SlidingUpPanelLayout_umanoShadowHeight,
+                        dpToPx(DEFAULT_SHADOW_HEIGHT, density));
+                parallaxOffset = ta.getDimensionPixelSize(R.styleable.SlidingUpPanelLayout_umanoParallaxOffset,
+                        dpToPx(DEFAULT_PARALLAX_OFFSET, density));
+
+                minFlingVelocity = ta.getInt(R.styleable.SlidingUpPanelLayout_umanoFlingVelocity, DEFAULT_MIN_FLING_VELOCITY);
+                fadeColor = ta.getColor(R.styleable.SlidingUpPanelLayout_umanoFadeColor, DEFAULT_FADE_COLOR);
+
+                dragViewResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoDragView, -1);
+                scrollableViewResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoScrollableView, -1);
+                panelContentStubResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoPanelContentStub, -1);
+                panelContentAsync = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoPanelContentAsync, DEFAULT_PANEL_CONTENT_ASYNC_FLAG);
+
+                overlay = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoOverlay, DEFAULT_OVERLAY_FLAG);
+                clipPanel = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoClipPanel, DEFAULT_CLIP_PANEL_FLAG);
+                panelOpaque = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoPanelOpaque, DEFAULT_PANEL_OPAQUE_FLAG);
+                deferMainViewResize = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoDeferMainViewResize, DEFAULT_DEFER_MAIN_VIEW_RESIZE_FLAG);
+
+                anchorPoint = ta.getFloat(R.styleable.SlidingUpPanelLayout_umanoAnchorPoint, DEFAULT_ANCHOR_POINT);
+                final int snapPointsResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoSnapPoints, -1);
+                if (snapPointsResId != -1) {
+                    snapPoints = readSnapPoints(context, snapPointsResId);
+                } else if (anchorPoint > 0 && anchorPoint < 1) {
+                    snapPoints = new float[]{anchorPoint};
+                } else {
+                    snapPoints = null;
+                }
+                projectFling = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoProjectFling, DEFAULT_PROJECT_FLING_FLAG);
+                coalesceDrag = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoCoalesceDrag, DEFAULT_COALESCE_DRAG_FLAG);
+                predictDrag = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoPredictDrag, DEFAULT_PREDICT_DRAG_FLAG);
+                coalesceStateChanges = ta.getBoolean(R.styleable.SlidingUpPanelLayout_umanoCoalesceStateChanges, DEFAULT_COALESCE_STATE_CHANGES_FLAG);
+
+                initialState = PanelState.values()[ta.getInt(R.styleable.SlidingUpPanelLayout_umanoInitialState, DEFAULT_SLIDE_STATE.ordinal())];
+
+                scrollInterpolatorResId = ta.getResourceId(R.styleable.SlidingUpPanelLayout_umanoScrollInterpolator, -1);
+                settleEngine = ta.getInt(R.styleable.SlidingUpPanelLayout_umanoSettleEngine, SETTLE_ENGINE_SCROLLER);
+                resizePolicy = ta.getInt(R.styleable.SlidingUpPanelLayout_umanoResizePolicy, DEFAULT_RESIZE_POLICY);
             } else {
-                return Math.min(Math.max(top, collapsedTop), expandedTop);
+                gravity = Gravity.TOP;
+                panelHeight = dpToPx(DEFAULT_PANEL_HEIGHT, density);
+                shadowHeight = dpToPx(DEFAULT_SHADOW_HEIGHT, density);
+                parallaxOffset = dpToPx(DEFAULT_PARALLAX_OFFSET, density);
+                minFlingVelocity = DEFAULT_MIN_FLING_VELOCITY;
+                fadeColor = DEFAULT_FADE_COLOR;
+                dragViewResId = -1;
+                scrollableViewResId = -1;
+                panelContentStubResId = -1;
+                panelContentAsync = DEFAULT_PANEL_CONTENT_ASYNC_FLAG;
+                overlay = DEFAULT_OVERLAY_FLAG;
+                clipPanel = DEFAULT_CLIP_PANEL_FLAG;
+                panelOpaque = DEFAULT_PANEL_OPAQUE_FLAG;
+                deferMainViewResize = DEFAULT_DEFER_MAIN_VIEW_RESIZE_FLAG;
+                anchorPoint = DEFAULT_ANCHOR_POINT;
+                snapPoints = null;
+                projectFling = DEFAULT_PROJECT_FLING_FLAG;
+                coalesceDrag = DEFAULT_COALESCE_DRAG_FLAG;
+                predictDrag = DEFAULT_PREDICT_DRAG_FLAG;
+                coalesceStateChanges = DEFAULT_COALESCE_STATE_CHANGES_FLAG;
+                initialState = DEFAULT_SLIDE_STATE;
+                scrollInterpolatorResId = -1;
+                settleEngine = SETTLE_ENGINE_SCROLLER;
+                resizePolicy = DEFAULT_RESIZE_POLICY;
+            }
+        }
+
+        private static int dpToPx(int dp, float density) {
+            return (int) (dp * density + 0.5f);
+        }
+
+        private static float[] readSnapPoints(Context context, int resId) {
+            TypedArray array = context.getResources().obtainTypedArray(resId);
+            float[] snapPoints = new float[array.length()];
+            for (int i = 0; i < snapPoints.length; i++) {
+                snapPoints[i] = array.getFloat(i, 0);
             }
+            array.recycle();
+            return snapPoints;
         }
     }
 
     public static class LayoutParams extends ViewGroup.MarginLayoutParams {
-        private static final int[] ATTRS = new int[]{
-                android.R.attr.layout_weight
-        };
-
         public float weight = 0;
 
+        /**
+         * Whether the child is rendered into a hardware layer while the panel is dragged or
+         * settles. Set it to false for content that animates on its own while the panel moves.
+         */
+        public boolean layerOnSlide = true;
+
+        /**
+         * True while the layout has promoted the child to a hardware layer
+         */
+        boolean layerPromoted;
+
         public LayoutParams() {
             super(MATCH_PARENT, MATCH_PARENT);
         }
@@ -1473,14 +2915,17 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         public LayoutParams(LayoutParams source) {
             super(source);
+            this.weight = source.weight;
+            this.layerOnSlide = source.layerOnSlide;
         }
 
         public LayoutParams(Context c, AttributeSet attrs) {
             super(c, attrs);
 
-            final TypedArray ta = c.obtainStyledAttributes(attrs, ATTRS);
+            final TypedArray ta = c.obtainStyledAttributes(attrs, R.styleable.SlidingUpPanelLayout_Layout);
             if (ta != null) {
-                this.weight = ta.getFloat(0, 0);
+                this.weight = ta.getFloat(R.styleable.SlidingUpPanelLayout_Layout_android_layout_weight, 0);
+                this.layerOnSlide = ta.getBoolean(R.styleable.SlidingUpPanelLayout_Layout_umanoLayerOnSlide, true);
                 ta.recycle();
             }
 
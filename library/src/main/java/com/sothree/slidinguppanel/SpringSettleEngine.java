@@ -0,0 +1,187 @@
+package com.sothree.slidinguppanel;
+
+/**
+ * Settles with a damped spring attached to the final position. The position is solved
+ * analytically from the time elapsed since the start, so the motion is the same whatever the
+ * display refresh rate is, and the release velocity carries over into the settle.
+ */
+public class SpringSettleEngine extends SettleEngine {
+
+    /**
+     * Default stiffness of the spring, for a unit mass
+     */
+    public static final float DEFAULT_STIFFNESS = 1500f;
+
+    /**
+     * Default damping ratio. 1 is critically damped: no bounce.
+     */
+    public static final float DEFAULT_DAMPING_RATIO = 1f;
+
+    /**
+     * Distance to the final position, in pixels, under which the spring may come to rest
+     */
+    private static final float REST_DISPLACEMENT = 0.5f;
+
+    /**
+     * Velocity, in pixels per second, under which the spring may come to rest
+     */
+    private static final float REST_VELOCITY = 10f;
+
+    private final float mNaturalFrequency;
+    private final float mDampingRatio;
+
+    private final Spring mSpringX = new Spring();
+    private final Spring mSpringY = new Spring();
+
+    private long mStartTimeNanos;
+    private boolean mFinished = true;
+
+    public SpringSettleEngine() {
+        this(DEFAULT_STIFFNESS, DEFAULT_DAMPING_RATIO);
+    }
+
+    /**
+     * @param stiffness    Stiffness of the spring, must be positive
+     * @param dampingRatio Damping ratio of the spring, must be positive. Values below 1 bounce
+     *                     around the final position.
+     */
+    public SpringSettleEngine(float stiffness, float dampingRatio) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("Spring stiffness must be positive");
+        }
+        if (dampingRatio <= 0) {
+            throw new IllegalArgumentException("Spring damping ratio must be positive");
+        }
+        mNaturalFrequency = (float) Math.sqrt(stiffness);
+        mDampingRatio = dampingRatio;
+    }
+
+    @Override
+    public void startSettle(int startX, int startY, int dx, int dy, int xvel, int yvel, int duration) {
+        mSpringX.start(startX, startX + dx, xvel);
+        mSpringY.start(startY, startY + dy, yvel);
+        mStartTimeNanos = System.nanoTime();
+        mFinished = false;
+    }
+
+    @Override
+    public void startFling(int startX, int startY, int xvel, int yvel, int minX, int maxX, int minY, int maxY) {
+        // Spring towards the bound the fling is heading to
+        final int finalX = xvel > 0 ? maxX : xvel < 0 ? minX : Math.min(Math.max(startX, minX), maxX);
+        final int finalY = yvel > 0 ? maxY : yvel < 0 ? minY : Math.min(Math.max(startY, minY), maxY);
+        startSettle(startX, startY, finalX - startX, finalY - startY, xvel, yvel, 0);
+    }
+
+    @Override
+    public boolean computeOffset(long frameTimeNanos) {
+        if (mFinished) {
+            return false;
+        }
+        final float t = Math.max(0, frameTimeNanos - mStartTimeNanos) / 1e9f;
+        mSpringX.update(t, mNaturalFrequency, mDampingRatio);
+        mSpringY.update(t, mNaturalFrequency, mDampingRatio);
+        if (mSpringX.isAtRest() && mSpringY.isAtRest()) {
+            abort();
+        }
+        return true;
+    }
+
+    @Override
+    public int getCurrX() {
+        return Math.round(mSpringX.mPosition);
+    }
+
+    @Override
+    public int getCurrY() {
+        return Math.round(mSpringY.mPosition);
+    }
+
+    @Override
+    public int getFinalX() {
+        return (int) mSpringX.mFinalPosition;
+    }
+
+    @Override
+    public int getFinalY() {
+        return (int) mSpringY.mFinalPosition;
+    }
+
+    @Override
+    public boolean canOvershoot() {
+        return mDampingRatio < 1;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Override
+    public void abort() {
+        mSpringX.mPosition = mSpringX.mFinalPosition;
+        mSpringY.mPosition = mSpringY.mFinalPosition;
+        mSpringX.mVelocity = mSpringY.mVelocity = 0;
+        mFinished = true;
+    }
+
+    /**
+     * One axis of the spring, solved in closed form from its initial displacement and velocity.
+     */
+    private static class Spring {
+        float mFinalPosition;
+        float mInitialDisplacement;
+        float mInitialVelocity;
+        float mPosition;
+        float mVelocity;
+
+        void start(float start, float end, float velocity) {
+            mFinalPosition = end;
+            mInitialDisplacement = start - end;
+            mInitialVelocity = velocity;
+            mPosition = start;
+            mVelocity = velocity;
+        }
+
+        void update(float t, float w0, float zeta) {
+            final float x0 = mInitialDisplacement;
+            final float v0 = mInitialVelocity;
+            final double x;
+            final double v;
+            if (zeta < 1) {
+                // Under damped
+                final double wd = w0 * Math.sqrt(1 - zeta * zeta);
+                final double a = x0;
+                final double b = (v0 + zeta * w0 * x0) / wd;
+                final double decay = Math.exp(-zeta * w0 * t);
+                final double cos = Math.cos(wd * t);
+                final double sin = Math.sin(wd * t);
+                x = decay * (a * cos + b * sin);
+                v = decay * ((b * wd - zeta * w0 * a) * cos - (a * wd + zeta * w0 * b) * sin);
+            } else if (zeta == 1) {
+                // Critically damped
+                final double b = v0 + w0 * x0;
+                final double decay = Math.exp(-w0 * t);
+                x = decay * (x0 + b * t);
+                v = decay * (b - w0 * (x0 + b * t));
+            } else {
+                // Over damped
+                final double wr = w0 * Math.sqrt(zeta * zeta - 1);
+                final double r1 = -zeta * w0 + wr;
+                final double r2 = -zeta * w0 - wr;
+                final double c2 = (r1 * x0 - v0) / (r1 - r2);
+                final double c1 = x0 - c2;
+                final double e1 = Math.exp(r1 * t);
+                final double e2 = Math.exp(r2 * t);
+                x = c1 * e1 + c2 * e2;
+                v = c1 * r1 * e1 + c2 * r2 * e2;
+            }
+            mPosition = (float) (mFinalPosition + x);
+            mVelocity = (float) v;
+        }
+
+        boolean isAtRest() {
+            return Math.abs(mPosition - mFinalPosition) < REST_DISPLACEMENT
+                    && Math.abs(mVelocity) < REST_VELOCITY;
+        }
+    }
+}
@@ -17,18 +17,25 @@
 
 package com.sothree.slidinguppanel;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.os.Build;
 import android.support.v4.view.MotionEventCompat;
 import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
-import android.support.v4.widget.ScrollerCompat;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 import android.view.animation.Interpolator;
 
+import com.sothree.slidinguppanel.core.DragPrediction;
+import com.sothree.slidinguppanel.core.SettleDurations;
+import com.sothree.slidinguppanel.core.VelocityEstimator;
+
 import java.util.Arrays;
 
 /**
@@ -103,8 +110,9 @@ public class ViewDragHelper {
 
     private static final int EDGE_SIZE = 20; // dp
 
-    private static final int BASE_SETTLE_DURATION = 256; // ms
-    private static final int MAX_SETTLE_DURATION = 600; // ms
+    private static final int MAX_PREDICTION_DISTANCE = 24; // dp
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
 
     // Current drag state; idle, dragging or settling
     private int mDragState;
@@ -123,6 +131,28 @@ public class ViewDragHelper {
     private int[] mEdgeDragsLocked;
     private int mPointersDown;
 
+    // Vertical single-pointer mode: only the first pointer down is tracked, along the Y axis
+    private boolean mVerticalSinglePointer;
+    private int mPrimaryPointerId = INVALID_POINTER;
+    private float mPrimaryInitialX;
+    private float mPrimaryInitialY;
+    // Last position applied to the captured view, which may be predicted
+    private float mPrimaryLastY;
+    // Last reported position, and its change since the previous report
+    private float mPrimaryRawY;
+    private float mPrimaryRawDeltaY;
+
+    // Replaces the platform velocity tracker in vertical single-pointer mode when set
+    private VelocityEstimator mVelocityEstimator;
+
+    // Drags are applied once per frame, to the latest pointer position, when set
+    private DragFrameCallback mDragFrameCallback;
+
+    // Drags are extrapolated to the next frame when set
+    private boolean mPredictDrag;
+    private float mPredictionLeadSeconds;
+    private float mMaxPredictionDistance;
+
     private VelocityTracker mVelocityTracker;
     private float mMaxVelocity;
     private float mMinVelocity;
@@ -130,13 +160,22 @@ public class ViewDragHelper {
     private int mEdgeSize;
     private int mTrackingEdges;
 
-    private ScrollerCompat mScroller;
+    // Created on the first settle unless set beforehand
+    private SettleEngine mSettleEngine;
+    private final Interpolator mInterpolator;
+
+    // Settling is advanced on Choreographer frame callbacks instead of computeScroll
+    private SettleFrameCallback mSettleFrameCallback;
 
     private final Callback mCallback;
 
     private View mCapturedView;
     private boolean mReleaseInProgress;
 
+    // Velocity of the last release, used when there is no velocity tracker to ask
+    private float mReleaseXVelocity;
+    private float mReleaseYVelocity;
+
     private final ViewGroup mParentView;
 
     /**
@@ -322,7 +361,7 @@ public class ViewDragHelper {
     }
 
     /**
-     * Interpolator defining the animation curve for mScroller
+     * Interpolator defining the animation curve for the default settle engine
      */
     private static final Interpolator sInterpolator = new Interpolator() {
         public float getInterpolation(float t) {
@@ -419,7 +458,239 @@ public class ViewDragHelper {
         mTouchSlop = vc.getScaledTouchSlop();
         mMaxVelocity = vc.getScaledMaximumFlingVelocity();
         mMinVelocity = vc.getScaledMinimumFlingVelocity();
-        mScroller = ScrollerCompat.create(context, interpolator != null ? interpolator : sInterpolator);
+        mInterpolator = interpolator != null ? interpolator : sInterpolator;
+    }
+
+    /**
+     * Set the engine computing the motion of views settling into place. By default views settle
+     * along the interpolator curve given at creation, see {@link ScrollerSettleEngine}.
+     *
+     * @param engine Engine to use for the next settles
+     */
+    public void setSettleEngine(SettleEngine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Settle engine may not be null");
+        }
+        if (mDragState == STATE_SETTLING) {
+            abort();
+        }
+        mSettleEngine = engine;
+    }
+
+    /**
+     * @return The engine computing the motion of views settling into place
+     */
+    public SettleEngine getSettleEngine() {
+        if (mSettleEngine == null) {
+            mSettleEngine = new ScrollerSettleEngine(mParentView.getContext(), mInterpolator);
+        }
+        return mSettleEngine;
+    }
+
+    /**
+     * Advance settling on {@link Choreographer} frame callbacks, using the frame time, instead of
+     * relying on the parent to call {@link #continueSettling(boolean)} on every frame.
+     * This requires API 16, this setting is ignored on older platforms.
+     *
+     * @param enabled true to settle on frame callbacks
+     */
+    public void setSettleOnFrameCallbacks(boolean enabled) {
+        if (enabled == isSettlingOnFrameCallbacks()) {
+            return;
+        }
+        if (enabled) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mSettleFrameCallback = new SettleFrameCallback();
+                if (mDragState == STATE_SETTLING) {
+                    mSettleFrameCallback.post();
+                }
+            }
+        } else {
+            mSettleFrameCallback.cancel();
+            mSettleFrameCallback = null;
+        }
+    }
+
+    /**
+     * @return true if settling is advanced on frame callbacks, in which case the parent must not
+     * call {@link #continueSettling(boolean)}
+     */
+    public boolean isSettlingOnFrameCallbacks() {
+        return mSettleFrameCallback != null;
+    }
+
+    /**
+     * Track only the first pointer of a gesture and only along the vertical axis. Other pointers
+     * are ignored, and the view is released when the first pointer goes up. Motion state is kept
+     * in fixed fields instead of per-pointer arrays, so tracking a gesture does not allocate.
+     * Edge tracking is not available in this mode.
+     *
+     * @param enabled true to enable vertical single-pointer mode
+     */
+    public void setVerticalSinglePointerMode(boolean enabled) {
+        if (mVerticalSinglePointer != enabled) {
+            cancel();
+            mVerticalSinglePointer = enabled;
+        }
+    }
+
+    /**
+     * @return true if only the first pointer of a gesture is tracked, along the vertical axis
+     */
+    public boolean isVerticalSinglePointerMode() {
+        return mVerticalSinglePointer;
+    }
+
+    /**
+     * Estimate the velocity of the primary pointer with an in-library {@link VelocityEstimator}
+     * instead of a platform VelocityTracker. The estimator is allocated once and reused for every
+     * gesture. Only used in vertical single-pointer mode.
+     *
+     * @param enabled true to use the in-library velocity estimator
+     * @see #setVerticalSinglePointerMode(boolean)
+     */
+    public void setVelocityEstimatorEnabled(boolean enabled) {
+        if (enabled == isVelocityEstimatorEnabled()) {
+            return;
+        }
+        cancel();
+        mVelocityEstimator = enabled ? new VelocityEstimator() : null;
+    }
+
+    /**
+     * @return true if the in-library velocity estimator is used in vertical single-pointer mode
+     */
+    public boolean isVelocityEstimatorEnabled() {
+        return mVelocityEstimator != null;
+    }
+
+    /**
+     * Return the current vertical velocity of the pointer dragging the captured view, which can be
+     * queried while dragging.
+     *
+     * @return The vertical velocity in pixels per second, 0 if no pointer is tracked
+     */
+    public float getCurrentYVelocity() {
+        if (usesVelocityEstimator()) {
+            return clampMag(mVelocityEstimator.computeVelocity(), 0, mMaxVelocity);
+        }
+        if (mVelocityTracker == null) {
+            return 0;
+        }
+        mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
+        return VelocityTrackerCompat.getYVelocity(mVelocityTracker,
+                mVerticalSinglePointer ? mPrimaryPointerId : mActivePointerId);
+    }
+
+    /**
+     * Apply drags once per {@link Choreographer} frame, to the latest position of the pointer,
+     * instead of on every move event. On touch screens sampling faster than the display refreshes,
+     * the view and the callback then see a single move per rendered frame. The pending drag is
+     * applied right away when the view is released. Only used in vertical single-pointer mode,
+     * and requires API 16, this setting is ignored on older platforms.
+     *
+     * @param enabled true to coalesce drags to frames
+     * @see #setVerticalSinglePointerMode(boolean)
+     */
+    public void setCoalesceDragToFrames(boolean enabled) {
+        if (enabled == isCoalescingDragToFrames()) {
+            return;
+        }
+        if (enabled) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mDragFrameCallback = new DragFrameCallback();
+            }
+        } else {
+            flushPendingDrag();
+            mDragFrameCallback = null;
+        }
+    }
+
+    /**
+     * @return true if drags are applied once per frame
+     */
+    public boolean isCoalescingDragToFrames() {
+        return mDragFrameCallback != null;
+    }
+
+    /**
+     * Apply the drag waiting for the next frame, if any.
+     */
+    private void flushPendingDrag() {
+        if (mDragFrameCallback != null && mDragFrameCallback.cancel()) {
+            applyPendingDrag();
+        }
+    }
+
+    private void applyPendingDrag() {
+        if (mDragState != STATE_DRAGGING || mCapturedView == null) {
+            return;
+        }
+        dragPrimaryTo(predictPrimaryY());
+    }
+
+    /**
+     * Apply the last drag without waiting for the next frame. Called before releasing the view.
+     * A predicted drag is only applied when it moves further along the pointer's last movement,
+     * so the view is never pulled back from where it was drawn and the settle starts from there.
+     */
+    private void finishPrimaryDrag() {
+        if (mDragFrameCallback != null) {
+            mDragFrameCallback.cancel();
+        }
+        final float y = predictPrimaryY();
+        if (y == mPrimaryRawY || (y - mPrimaryLastY) * mPrimaryRawDeltaY > 0) {
+            dragPrimaryTo(y);
+        }
+    }
+
+    private void dragPrimaryTo(float y) {
+        final int idy = (int) (y - mPrimaryLastY);
+        dragTo(mCapturedView.getLeft(), mCapturedView.getTop() + idy, 0, idy);
+        mPrimaryLastY = y;
+    }
+
+    /**
+     * Extrapolate drags to where the pointer will be at the next frame, from its velocity and
+     * acceleration, so the captured view does not trail behind the finger. Prediction is limited
+     * to a short distance and stops when the pointer reverses. Only used in vertical
+     * single-pointer mode with the velocity estimator enabled.
+     *
+     * @param enabled true to predict drags
+     * @see #setVelocityEstimatorEnabled(boolean)
+     */
+    public void setDragPredictionEnabled(boolean enabled) {
+        if (enabled && !mPredictDrag) {
+            final Context context = mParentView.getContext();
+            final WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            float refreshRate = wm != null ? wm.getDefaultDisplay().getRefreshRate() : DEFAULT_REFRESH_RATE;
+            if (refreshRate < 1f) {
+                refreshRate = DEFAULT_REFRESH_RATE;
+            }
+            mPredictionLeadSeconds = 1f / refreshRate;
+            mMaxPredictionDistance = MAX_PREDICTION_DISTANCE * context.getResources().getDisplayMetrics().density;
+        }
+        mPredictDrag = enabled;
+    }
+
+    /**
+     * @return true if drags are extrapolated to the next frame
+     */
+    public boolean isDragPredictionEnabled() {
+        return mPredictDrag;
+    }
+
+    private float predictPrimaryY() {
+        if (!mPredictDrag || !usesVelocityEstimator()) {
+            return mPrimaryRawY;
+        }
+        return DragPrediction.predictPosition(mPrimaryRawY, mPrimaryRawDeltaY,
+                mVelocityEstimator.computeVelocity(), mVelocityEstimator.computeAcceleration(),
+                mPredictionLeadSeconds, mMaxPredictionDistance);
+    }
+
+    private boolean usesVelocityEstimator() {
+        return mVerticalSinglePointer && mVelocityEstimator != null;
     }
 
     /**
@@ -526,9 +797,17 @@ public class ViewDragHelper {
      * {@link #processTouchEvent(android.view.MotionEvent)} receiving an ACTION_CANCEL event.
      */
     public void cancel() {
+        if (mDragFrameCallback != null) {
+            mDragFrameCallback.cancel();
+        }
         mActivePointerId = INVALID_POINTER;
+        mPrimaryPointerId = INVALID_POINTER;
         clearMotionHistory();
 
+        if (mVelocityEstimator != null) {
+            mVelocityEstimator.clear();
+        }
+
         if (mVelocityTracker != null) {
             mVelocityTracker.recycle();
             mVelocityTracker = null;
@@ -542,11 +821,11 @@ public class ViewDragHelper {
     public void abort() {
         cancel();
         if (mDragState == STATE_SETTLING) {
-            final int oldX = mScroller.getCurrX();
-            final int oldY = mScroller.getCurrY();
-            mScroller.abortAnimation();
-            final int newX = mScroller.getCurrX();
-            final int newY = mScroller.getCurrY();
+            final int oldX = mSettleEngine.getCurrX();
+            final int oldY = mSettleEngine.getCurrY();
+            mSettleEngine.abort();
+            final int newX = mSettleEngine.getCurrX();
+            final int newY = mSettleEngine.getCurrY();
             mCallback.onViewPositionChanged(mCapturedView, newX, newY, newX - oldX, newY - oldY);
         }
         setDragState(STATE_IDLE);
@@ -555,7 +834,8 @@ public class ViewDragHelper {
     /**
      * Animate the view <code>child</code> to the given (left, top) position.
      * If this method returns true, the caller should invoke {@link #continueSettling(boolean)}
-     * on each subsequent frame to continue the motion until it returns false. If this method
+     * on each subsequent frame to continue the motion until it returns false, unless
+     * {@link #isSettlingOnFrameCallbacks()} is true. If this method
      * returns false there is no further work to do to complete the movement.
      *
      * <p>This operation does not count as a capture event, though {@link #getCapturedView()}
@@ -591,8 +871,7 @@ public class ViewDragHelper {
         }
 
         return forceSettleCapturedViewAt(finalLeft, finalTop,
-                (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId));
+                (int) getReleaseXVelocity(), (int) getReleaseYVelocity());
     }
 
     /**
@@ -612,76 +891,25 @@ public class ViewDragHelper {
 
         if (dx == 0 && dy == 0) {
             // Nothing to do. Send callbacks, be done.
-            mScroller.abortAnimation();
+            if (mSettleEngine != null) {
+                mSettleEngine.abort();
+            }
             setDragState(STATE_IDLE);
             return false;
         }
 
         final int duration = computeSettleDuration(mCapturedView, dx, dy, xvel, yvel);
-        mScroller.startScroll(startLeft, startTop, dx, dy, duration);
+        getSettleEngine().startSettle(startLeft, startTop, dx, dy, xvel, yvel, duration);
 
         setDragState(STATE_SETTLING);
         return true;
     }
 
     private int computeSettleDuration(View child, int dx, int dy, int xvel, int yvel) {
-        xvel = clampMag(xvel, (int) mMinVelocity, (int) mMaxVelocity);
-        yvel = clampMag(yvel, (int) mMinVelocity, (int) mMaxVelocity);
-        final int absDx = Math.abs(dx);
-        final int absDy = Math.abs(dy);
-        final int absXVel = Math.abs(xvel);
-        final int absYVel = Math.abs(yvel);
-        final int addedVel = absXVel + absYVel;
-        final int addedDistance = absDx + absDy;
-
-        final float xweight = xvel != 0 ? (float) absXVel / addedVel :
-                (float) absDx / addedDistance;
-        final float yweight = yvel != 0 ? (float) absYVel / addedVel :
-                (float) absDy / addedDistance;
-
-        int xduration = computeAxisDuration(dx, xvel, mCallback.getViewHorizontalDragRange(child));
-        int yduration = computeAxisDuration(dy, yvel, mCallback.getViewVerticalDragRange(child));
-
-        return (int) (xduration * xweight + yduration * yweight);
-    }
-
-    private int computeAxisDuration(int delta, int velocity, int motionRange) {
-        if (delta == 0) {
-            return 0;
-        }
-
-        final int width = mParentView.getWidth();
-        final int halfWidth = width / 2;
-        final float distanceRatio = Math.min(1f, (float) Math.abs(delta) / width);
-        final float distance = halfWidth + halfWidth *
-                distanceInfluenceForSnapDuration(distanceRatio);
-
-        int duration;
-        velocity = Math.abs(velocity);
-        if (velocity > 0) {
-            duration = 4 * Math.round(1000 * Math.abs(distance / velocity));
-        } else {
-            final float range = (float) Math.abs(delta) / motionRange;
-            duration = (int) ((range + 1) * BASE_SETTLE_DURATION);
-        }
-        return Math.min(duration, MAX_SETTLE_DURATION);
-    }
-
-    /**
-     * Clamp the magnitude of value for absMin and absMax.
-     * If the value is below the minimum, it will be clamped to zero.
-     * If the value is above the maximum, it will be clamped to the maximum.
-     *
-     * @param value Value to clamp
-     * @param absMin Absolute value of the minimum significant value to return
-     * @param absMax Absolute value of the maximum value to return
-     * @return The clamped value with the same sign as <code>value</code>
-     */
-    private int clampMag(int value, int absMin, int absMax) {
-        final int absValue = Math.abs(value);
-        if (absValue < absMin) return 0;
-        if (absValue > absMax) return value > 0 ? absMax : -absMax;
-        return value;
+        return SettleDurations.computeSettleDuration(dx, dy, xvel, yvel,
+                (int) mMinVelocity, (int) mMaxVelocity,
+                mCallback.getViewHorizontalDragRange(child), mCallback.getViewVerticalDragRange(child),
+                mParentView.getWidth());
     }
 
     /**
@@ -701,12 +929,6 @@ public class ViewDragHelper {
         return value;
     }
 
-    private float distanceInfluenceForSnapDuration(float f) {
-        f -= 0.5f; // center the values about 0.
-        f *= 0.3f * Math.PI / 2.0f;
-        return (float) Math.sin(f);
-    }
-
     /**
      * Settle the captured view based on standard free-moving fling behavior.
      * The caller should invoke {@link #continueSettling(boolean)} on each subsequent frame
@@ -723,9 +945,8 @@ public class ViewDragHelper {
                     "Callback#onViewReleased");
         }
 
-        mScroller.fling(mCapturedView.getLeft(), mCapturedView.getTop(),
-                (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
+        getSettleEngine().startFling(mCapturedView.getLeft(), mCapturedView.getTop(),
+                (int) getReleaseXVelocity(), (int) getReleaseYVelocity(),
                 minLeft, maxLeft, minTop, maxTop);
 
         setDragState(STATE_SETTLING);
@@ -743,14 +964,18 @@ public class ViewDragHelper {
      * @return true if settle is still in progress
      */
     public boolean continueSettling(boolean deferCallbacks) {
+        return continueSettling(System.nanoTime(), deferCallbacks);
+    }
+
+    private boolean continueSettling(long frameTimeNanos, boolean deferCallbacks) {
         // Make sure, there is a captured view
         if (mCapturedView == null) {
             return false;
         }
         if (mDragState == STATE_SETTLING) {
-            boolean keepGoing = mScroller.computeScrollOffset();
-            final int x = mScroller.getCurrX();
-            final int y = mScroller.getCurrY();
+            boolean keepGoing = mSettleEngine.computeOffset(frameTimeNanos);
+            final int x = mSettleEngine.getCurrX();
+            final int y = mSettleEngine.getCurrY();
             final int dx = x - mCapturedView.getLeft();
             final int dy = y - mCapturedView.getTop();
             
@@ -771,11 +996,12 @@ public class ViewDragHelper {
                 mCallback.onViewPositionChanged(mCapturedView, x, y, dx, dy);
             }
 
-            if (keepGoing && x == mScroller.getFinalX() && y == mScroller.getFinalY()) {
+            if (keepGoing && !mSettleEngine.canOvershoot()
+                    && x == mSettleEngine.getFinalX() && y == mSettleEngine.getFinalY()) {
                 // Close enough. The interpolator/scroller might think we're still moving
                 // but the user sure doesn't.
-                mScroller.abortAnimation();
-                keepGoing = mScroller.isFinished();
+                mSettleEngine.abort();
+                keepGoing = mSettleEngine.isFinished();
             }
 
             if (!keepGoing) {
@@ -797,6 +1023,8 @@ public class ViewDragHelper {
      * or {@link #flingCapturedView(int, int, int, int)}.
      */
     private void dispatchViewReleased(float xvel, float yvel) {
+        mReleaseXVelocity = xvel;
+        mReleaseYVelocity = yvel;
         mReleaseInProgress = true;
         mCallback.onViewReleased(mCapturedView, xvel, yvel);
         mReleaseInProgress = false;
@@ -902,12 +1130,22 @@ public class ViewDragHelper {
      * @return true if the pointer with the given ID is still down
      */
     public boolean isPointerDown(int pointerId) {
+        if (mVerticalSinglePointer) {
+            return pointerId != INVALID_POINTER && pointerId == mPrimaryPointerId;
+        }
         return (mPointersDown & 1 << pointerId) != 0;
     }
 
     void setDragState(int state) {
         if (mDragState != state) {
             mDragState = state;
+            if (mSettleFrameCallback != null) {
+                if (state == STATE_SETTLING) {
+                    mSettleFrameCallback.post();
+                } else {
+                    mSettleFrameCallback.cancel();
+                }
+            }
             mCallback.onViewDragStateChanged(state);
             if (mDragState == STATE_IDLE) {
                 mCapturedView = null;
@@ -981,6 +1219,9 @@ public class ViewDragHelper {
      * @return true if the parent view should return true from onInterceptTouchEvent
      */
     public boolean shouldInterceptTouchEvent(MotionEvent ev) {
+        if (mVerticalSinglePointer) {
+            return shouldInterceptVerticalTouchEvent(ev);
+        }
         final int action = MotionEventCompat.getActionMasked(ev);
         final int actionIndex = MotionEventCompat.getActionIndex(ev);
 
@@ -1091,6 +1332,10 @@ public class ViewDragHelper {
      * @param ev The touch event received by the parent view
      */
     public void processTouchEvent(MotionEvent ev) {
+        if (mVerticalSinglePointer) {
+            processVerticalTouchEvent(ev);
+            return;
+        }
         final int action = MotionEventCompat.getActionMasked(ev);
         final int actionIndex = MotionEventCompat.getActionIndex(ev);
 
@@ -1242,6 +1487,216 @@ public class ViewDragHelper {
         }
     }
 
+    private boolean shouldInterceptVerticalTouchEvent(MotionEvent ev) {
+        final int action = MotionEventCompat.getActionMasked(ev);
+
+        if (action == MotionEvent.ACTION_DOWN) {
+            // Reset things for a new event stream, just in case we didn't get
+            // the whole previous stream.
+            cancel();
+        }
+
+        if (!usesVelocityEstimator()) {
+            if (mVelocityTracker == null) {
+                mVelocityTracker = VelocityTracker.obtain();
+            }
+            mVelocityTracker.addMovement(ev);
+        }
+
+        switch (action) {
+            case MotionEvent.ACTION_DOWN: {
+                savePrimaryInitialMotion(ev);
+
+                // Catch a settling view if possible.
+                final View toCapture = findTopChildUnder((int) mPrimaryInitialX, (int) mPrimaryInitialY);
+                if (toCapture == mCapturedView && mDragState == STATE_SETTLING) {
+                    tryCaptureViewForDrag(toCapture, mPrimaryPointerId);
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_MOVE: {
+                final int index = MotionEventCompat.findPointerIndex(ev, mPrimaryPointerId);
+                if (index < 0) {
+                    break;
+                }
+                processPrimaryHistory(ev, index);
+                final float y = MotionEventCompat.getY(ev, index);
+                trackPrimaryY(ev.getEventTime(), y);
+                if (mDragState == STATE_DRAGGING) {
+                    // Captured at a batched sample, move the view by the rest of the motion
+                    dragPrimaryTo(y);
+                } else {
+                    tryCaptureViewForVerticalDrag(y);
+                    mPrimaryLastY = y;
+                }
+                break;
+            }
+
+            case MotionEventCompat.ACTION_POINTER_UP: {
+                final int pointerId = MotionEventCompat.getPointerId(ev, MotionEventCompat.getActionIndex(ev));
+                if (pointerId == mPrimaryPointerId) {
+                    mPrimaryPointerId = INVALID_POINTER;
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL: {
+                cancel();
+                break;
+            }
+        }
+
+        return mDragState == STATE_DRAGGING;
+    }
+
+    private void processVerticalTouchEvent(MotionEvent ev) {
+        final int action = MotionEventCompat.getActionMasked(ev);
+
+        if (action == MotionEvent.ACTION_DOWN) {
+            // Reset things for a new event stream, just in case we didn't get
+            // the whole previous stream.
+            cancel();
+        }
+
+        if (!usesVelocityEstimator()) {
+            if (mVelocityTracker == null) {
+                mVelocityTracker = VelocityTracker.obtain();
+            }
+            mVelocityTracker.addMovement(ev);
+        }
+
+        switch (action) {
+            case MotionEvent.ACTION_DOWN: {
+                savePrimaryInitialMotion(ev);
+
+                // Since the parent is already directly processing this touch event,
+                // there is no reason to delay for a slop before dragging.
+                // Start immediately if possible.
+                final View toCapture = findTopChildUnder((int) mPrimaryInitialX, (int) mPrimaryInitialY);
+                tryCaptureViewForDrag(toCapture, mPrimaryPointerId);
+                break;
+            }
+
+            case MotionEvent.ACTION_MOVE: {
+                final int index = MotionEventCompat.findPointerIndex(ev, mPrimaryPointerId);
+                if (index < 0) {
+                    break;
+                }
+                processPrimaryHistory(ev, index);
+                final float y = MotionEventCompat.getY(ev, index);
+                trackPrimaryY(ev.getEventTime(), y);
+                if (mDragState == STATE_DRAGGING) {
+                    if (mDragFrameCallback != null) {
+                        // Applied on the next frame
+                        mDragFrameCallback.post();
+                    } else {
+                        dragPrimaryTo(predictPrimaryY());
+                    }
+                } else {
+                    tryCaptureViewForVerticalDrag(y);
+                    mPrimaryLastY = y;
+                }
+                break;
+            }
+
+            case MotionEventCompat.ACTION_POINTER_UP: {
+                final int pointerId = MotionEventCompat.getPointerId(ev, MotionEventCompat.getActionIndex(ev));
+                if (pointerId == mPrimaryPointerId) {
+                    if (mDragState == STATE_DRAGGING) {
+                        trackPrimaryUp(ev, MotionEventCompat.getActionIndex(ev));
+                        finishPrimaryDrag();
+                        releaseViewForPointerUp();
+                    }
+                    mPrimaryPointerId = INVALID_POINTER;
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_UP: {
+                if (mDragState == STATE_DRAGGING) {
+                    trackPrimaryUp(ev, MotionEventCompat.findPointerIndex(ev, mPrimaryPointerId));
+                    finishPrimaryDrag();
+                    releaseViewForPointerUp();
+                }
+                cancel();
+                break;
+            }
+
+            case MotionEvent.ACTION_CANCEL: {
+                if (mDragState == STATE_DRAGGING) {
+                    finishPrimaryDrag();
+                    dispatchViewReleased(0, 0);
+                }
+                cancel();
+                break;
+            }
+        }
+    }
+
+    private void savePrimaryInitialMotion(MotionEvent ev) {
+        mPrimaryPointerId = MotionEventCompat.getPointerId(ev, 0);
+        mPrimaryInitialX = ev.getX();
+        mPrimaryInitialY = mPrimaryLastY = mPrimaryRawY = ev.getY();
+        mPrimaryRawDeltaY = 0;
+        if (usesVelocityEstimator()) {
+            mVelocityEstimator.addSample(ev.getEventTime(), mPrimaryInitialY);
+        }
+    }
+
+    /**
+     * Go through the samples of the primary pointer batched into a move event before its current
+     * one. They feed the velocity estimator, and a drag can start at the first one crossing the
+     * touch slop, in which case the rest of the motion in the event moves the view right away.
+     */
+    private void processPrimaryHistory(MotionEvent ev, int index) {
+        if (!usesVelocityEstimator() && mDragState == STATE_DRAGGING) {
+            return;
+        }
+        final int historySize = ev.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            final float y = ev.getHistoricalY(index, h);
+            trackPrimaryY(ev.getHistoricalEventTime(h), y);
+            if (mDragState != STATE_DRAGGING && tryCaptureViewForVerticalDrag(y)) {
+                mPrimaryLastY = y;
+            }
+        }
+    }
+
+    /**
+     * Track the position at which the primary pointer goes up, so that the release velocity
+     * includes its last movement, as the platform VelocityTracker does.
+     */
+    private void trackPrimaryUp(MotionEvent ev, int index) {
+        if (index < 0) {
+            return;
+        }
+        processPrimaryHistory(ev, index);
+        trackPrimaryY(ev.getEventTime(), MotionEventCompat.getY(ev, index));
+    }
+
+    private void trackPrimaryY(long timeMillis, float y) {
+        if (usesVelocityEstimator()) {
+            mVelocityEstimator.addSample(timeMillis, y);
+        }
+        mPrimaryRawDeltaY = y - mPrimaryRawY;
+        mPrimaryRawY = y;
+    }
+
+    /**
+     * Capture the view under the initial position of the primary pointer once it crossed the
+     * touch slop vertically.
+     */
+    private boolean tryCaptureViewForVerticalDrag(float y) {
+        if (Math.abs(y - mPrimaryInitialY) <= mTouchSlop) {
+            return false;
+        }
+        final View toCapture = findTopChildUnder((int) mPrimaryInitialX, (int) mPrimaryInitialY);
+        return toCapture != null && mCallback.getViewVerticalDragRange(toCapture) > 0
+                && tryCaptureViewForDrag(toCapture, mPrimaryPointerId);
+    }
+
     private void reportNewEdgeDrags(float dx, float dy, int pointerId) {
         int dragsStarted = 0;
         if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_LEFT)) {
@@ -1322,6 +1777,12 @@ public class ViewDragHelper {
      * @return true if the slop threshold has been crossed, false otherwise
      */
     public boolean checkTouchSlop(int directions) {
+        if (mVerticalSinglePointer) {
+            return checkTouchSlop(directions, mPrimaryPointerId);
+        }
+        if (mInitialMotionX == null) {
+            return false;
+        }
         final int count = mInitialMotionX.length;
         for (int i = 0; i < count; i++) {
             if (checkTouchSlop(directions, i)) {
@@ -1354,6 +1815,11 @@ public class ViewDragHelper {
         final boolean checkHorizontal = (directions & DIRECTION_HORIZONTAL) == DIRECTION_HORIZONTAL;
         final boolean checkVertical = (directions & DIRECTION_VERTICAL) == DIRECTION_VERTICAL;
 
+        if (mVerticalSinglePointer) {
+            // The horizontal axis is not tracked
+            return checkVertical && Math.abs(mPrimaryRawY - mPrimaryInitialY) > mTouchSlop;
+        }
+
         final float dx = mLastMotionX[pointerId] - mInitialMotionX[pointerId];
         final float dy = mLastMotionY[pointerId] - mInitialMotionY[pointerId];
 
@@ -1377,6 +1843,10 @@ public class ViewDragHelper {
      * @return true if any of the edges specified were initially touched in the current gesture
      */
     public boolean isEdgeTouched(int edges) {
+        if (mInitialEdgesTouched == null) {
+            // Nothing tracked yet, or vertical single-pointer mode which does not track edges
+            return false;
+        }
         final int count = mInitialEdgesTouched.length;
         for (int i = 0; i < count; i++) {
             if (isEdgeTouched(edges, i)) {
@@ -1397,14 +1867,64 @@ public class ViewDragHelper {
      * @return true if any of the edges specified were initially touched in the current gesture
      */
     public boolean isEdgeTouched(int edges, int pointerId) {
-        return isPointerDown(pointerId) && (mInitialEdgesTouched[pointerId] & edges) != 0;
+        return !mVerticalSinglePointer && isPointerDown(pointerId)
+                && (mInitialEdgesTouched[pointerId] & edges) != 0;
     }
 
     public boolean isDragging() {
         return mDragState == STATE_DRAGGING;
     }
 
+    private float getReleaseXVelocity() {
+        return mVelocityTracker != null
+                ? VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId)
+                : mReleaseXVelocity;
+    }
+
+    private float getReleaseYVelocity() {
+        return mVelocityTracker != null
+                ? VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId)
+                : mReleaseYVelocity;
+    }
+
+    /**
+     * Move the captured view by the given amount, as if it was dragged by a pointer. This lets
+     * the parent drive the captured view from another source of motion, such as nested scrolling.
+     * The movement goes through the callback's clamping methods.
+     *
+     * @param dx Horizontal movement in pixels
+     * @param dy Vertical movement in pixels
+     */
+    public void dragCapturedViewBy(int dx, int dy) {
+        if (mDragState != STATE_DRAGGING || mCapturedView == null) {
+            throw new IllegalStateException("Cannot dragCapturedViewBy without a captured view " +
+                    "being dragged");
+        }
+        dragTo(mCapturedView.getLeft() + dx, mCapturedView.getTop() + dy, dx, dy);
+    }
+
+    /**
+     * Release the captured view with the given velocity, as if the pointer dragging it went up.
+     * {@link Callback#onViewReleased(View, float, float)} is called and may settle the view.
+     *
+     * @param xvel Horizontal velocity in pixels per second
+     * @param yvel Vertical velocity in pixels per second
+     */
+    public void releaseCapturedView(float xvel, float yvel) {
+        if (mDragState != STATE_DRAGGING || mCapturedView == null) {
+            return;
+        }
+        // The velocity comes from the caller, not from the tracker
+        cancel();
+        dispatchViewReleased(clampMag(xvel, mMinVelocity, mMaxVelocity),
+                clampMag(yvel, mMinVelocity, mMaxVelocity));
+    }
+
     private void releaseViewForPointerUp() {
+        if (usesVelocityEstimator()) {
+            dispatchViewReleased(0, clampMag(mVelocityEstimator.computeVelocity(), mMinVelocity, mMaxVelocity));
+            return;
+        }
         mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
         final float xvel = clampMag(
                 VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
@@ -1499,4 +2019,73 @@ public class ViewDragHelper {
 
         return result;
     }
+
+    /**
+     * Applies the latest drag once per frame. Only created on API 16 and above.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class DragFrameCallback implements Choreographer.FrameCallback {
+        private boolean mPosted;
+
+        void post() {
+            if (!mPosted) {
+                mPosted = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        /**
+         * @return true if a frame was pending
+         */
+        boolean cancel() {
+            if (mPosted) {
+                mPosted = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPosted = false;
+            applyPendingDrag();
+        }
+    }
+
+    /**
+     * Advances settling once per frame, with the frame time. Only created on API 16 and above.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class SettleFrameCallback implements Choreographer.FrameCallback {
+        private boolean mPosted;
+
+        void post() {
+            if (!mPosted) {
+                mPosted = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void cancel() {
+            if (mPosted) {
+                mPosted = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPosted = false;
+            // Same as the parent does from computeScroll when settling without frame callbacks
+            if (!mParentView.isEnabled()) {
+                abort();
+                return;
+            }
+            // Not called from a layout or draw pass, so the idle state can be set right away
+            if (continueSettling(frameTimeNanos, false)) {
+                post();
+            }
+        }
+    }
 }
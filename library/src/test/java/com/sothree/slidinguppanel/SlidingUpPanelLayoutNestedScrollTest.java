@@ -0,0 +1,93 @@
+package com.sothree.slidinguppanel;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class SlidingUpPanelLayoutNestedScrollTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    private static final int HEADER_HEIGHT = 100;
+
+    private SlidingUpPanelLayout mLayout;
+    private LinearLayout mPanel;
+    private View mHeader;
+    private RecyclerView mList;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        mLayout = new SlidingUpPanelLayout(context);
+        mPanel = new LinearLayout(context);
+        mPanel.setOrientation(LinearLayout.VERTICAL);
+        mHeader = new View(context);
+        mPanel.addView(mHeader, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, HEADER_HEIGHT));
+        mList = new RecyclerView(context);
+        mPanel.addView(mList, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1));
+        mLayout.addView(new View(context), new SlidingUpPanelLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.addView(mPanel, new SlidingUpPanelLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.setPanelHeight(HEADER_HEIGHT);
+        mLayout.setScrollableView(mList);
+        mLayout.setPanelState(SlidingUpPanelLayout.PanelState.EXPANDED);
+    }
+
+    private void layout() {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private void touchDown(float x, float y) {
+        final long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        mLayout.dispatchTouchEvent(down);
+        down.recycle();
+    }
+
+    private boolean startsNestedScroll() {
+        return mLayout.onStartNestedScroll(mPanel, mList, ViewCompat.SCROLL_AXIS_VERTICAL, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Test
+    public void listInsideTheDragViewDragsThePanel() {
+        layout();
+        touchDown(WIDTH / 2, HEIGHT / 2);
+        assertTrue(startsNestedScroll());
+    }
+
+    @Test
+    public void listOutsideTheDragViewDoesNotDragThePanel() {
+        mLayout.setDragView(mHeader);
+        layout();
+        touchDown(WIDTH / 2, HEIGHT / 2);
+        assertFalse(startsNestedScroll());
+    }
+
+    @Test
+    public void touchOnTheHeaderDoesNotLetTheListDragThePanel() {
+        mLayout.setDragView(mHeader);
+        layout();
+        touchDown(WIDTH / 2, HEADER_HEIGHT / 2);
+        assertFalse(startsNestedScroll());
+    }
+}